@@ -16,33 +16,116 @@
 
 package org.qubership.integration.platform.variables.management.configuration;
 
-import org.jetbrains.annotations.NotNull;
+import org.qubership.integration.platform.variables.management.consul.ConsulRequestTimeout;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
-import org.springframework.http.client.BufferingClientHttpRequestFactory;
-import org.springframework.http.client.ClientHttpRequestFactory;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.Duration;
-import java.util.function.Supplier;
 
 @AutoConfiguration
 public class RestTemplateAutoConfiguration {
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int connectionRequestTimeout;
+    private final int maxConnections;
+    private final int maxConnectionsPerRoute;
+    private final long keepAlive;
+    private final long idleTimeout;
+
+    public RestTemplateAutoConfiguration(@Value("${connection.connectTimeout}") int connectTimeout,
+                                         @Value("${connection.readTimeout}") int readTimeout,
+                                         @Value("${connection.connectionRequestTimeout}") int connectionRequestTimeout,
+                                         @Value("${connection.maxConnections}") int maxConnections,
+                                         @Value("${connection.maxConnectionsPerRoute}") int maxConnectionsPerRoute,
+                                         @Value("${connection.keepAlive}") long keepAlive,
+                                         @Value("${connection.idleTimeout}") long idleTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.connectionRequestTimeout = connectionRequestTimeout;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.keepAlive = keepAlive;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Keep-alive connection pool shared by all requests of restTemplateMS (consul client)
+     */
+    @Bean("restTemplateMSConnectionManager")
+    public PoolingHttpClientConnectionManager restTemplateMSConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+    }
+
+    @Bean
+    public MeterBinder restTemplateMSConnectionPoolMetrics(
+            @Qualifier("restTemplateMSConnectionManager") PoolingHttpClientConnectionManager connectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "restTemplateMS");
+    }
 
     @Bean("restTemplateMS")
     @ConditionalOnMissingBean
-    public RestTemplate restTemplateMSDev(RestTemplateBuilder builder) {
+    public RestTemplate restTemplateMSDev(
+            RestTemplateBuilder builder,
+            @Qualifier("restTemplateMSConnectionManager") PoolingHttpClientConnectionManager connectionManager) {
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionKeepAlive(TimeValue.ofMilliseconds(keepAlive))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleTimeout))
+                .build();
+
         return builder
-                .requestFactory(getClientHttpRequestFactorySupplier())
-                .setConnectTimeout(Duration.ofMillis(60_000))
-                .setReadTimeout(Duration.ofMillis(60_000))
+                .requestFactory(() -> {
+                    HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+                    requestFactory.setConnectionRequestTimeout(Duration.ofMillis(connectionRequestTimeout));
+                    requestFactory.setReadTimeout(Duration.ofMillis(readTimeout));
+                    requestFactory.setHttpContextFactory((method, uri) -> createHttpContext());
+                    return requestFactory;
+                })
                 .build();
     }
 
-    private static @NotNull Supplier<ClientHttpRequestFactory> getClientHttpRequestFactorySupplier() {
-        return () -> new BufferingClientHttpRequestFactory(new SimpleClientHttpRequestFactory());
+    /**
+     * @return context with the per-operation response timeout of a consul request, null - use the read timeout
+     */
+    private HttpContext createHttpContext() {
+        Duration timeout = ConsulRequestTimeout.current();
+        if (timeout == null) {
+            return null;
+        }
+        HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeout))
+                .setResponseTimeout(Timeout.of(timeout))
+                .setConnectionKeepAlive(TimeValue.ofMilliseconds(keepAlive))
+                .build());
+        return context;
     }
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Storage format of common variables values in consul.
+ * Values below the compression threshold are stored as is (UTF-8), larger ones are gzipped,
+ * and if still larger than the chunk size, split into sub-keys {@code <variable>/<generation>/<n>}
+ * referenced by a header stored in the variable key.
+ * Encoded values start with 0xFF, which never occurs in UTF-8, so plain values are always read as before.
+ * New chunks are written under a new generation before the header, so readers never see a partial value.
+ */
+@Slf4j
+@Component
+public class CommonVariableCodec {
+    private static final byte MARKER = (byte) 0xFF;
+    private static final byte GZIP = 'G';
+    private static final byte CHUNKED = 'C';
+
+    /**
+     * @param value       stored in the variable key
+     * @param chunks      chunks to be written under {@code <variable>/<generation>/} before the value, empty if not chunked
+     */
+    public record Encoded(byte[] value, @Nullable String generation, List<byte[]> chunks) {
+        public boolean isChunked() {
+            return generation != null;
+        }
+    }
+
+    /**
+     * Header of a chunked value
+     */
+    public record ChunkedHeader(String generation, int count, boolean compressed) {
+    }
+
+    @FunctionalInterface
+    public interface ChunkSource {
+        /**
+         * @param path chunk path relative to the variable key, {@code <generation>/<n>}
+         * @return chunk data, null if missing
+         */
+        @Nullable byte[] getChunk(String path);
+    }
+
+    private final boolean enabled;
+    private final int compressThreshold;
+    private final int chunkSize;
+
+    @Autowired
+    public CommonVariableCodec(@Value("${consul.codec.enabled}") boolean enabled,
+                               @Value("${consul.codec.compress-threshold}") int compressThreshold,
+                               @Value("${consul.codec.chunk-size}") int chunkSize) {
+        this.enabled = enabled;
+        this.compressThreshold = compressThreshold;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return false if values are written as is, values written before are still decoded
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Encoded encode(String value) {
+        byte[] raw = value.getBytes(StandardCharsets.UTF_8);
+        if (!enabled || raw.length < compressThreshold) {
+            return new Encoded(raw, null, List.of());
+        }
+
+        byte[] compressed = gzip(raw);
+        boolean useCompressed = compressed.length < raw.length;
+        byte[] payload = useCompressed ? compressed : raw;
+        if (payload.length <= chunkSize) {
+            return new Encoded(useCompressed ? withMarker(GZIP, payload) : raw, null, List.of());
+        }
+
+        List<byte[]> chunks = new ArrayList<>();
+        for (int from = 0; from < payload.length; from += chunkSize) {
+            chunks.add(Arrays.copyOfRange(payload, from, Math.min(payload.length, from + chunkSize)));
+        }
+        String generation = Long.toString(System.currentTimeMillis(), 36)
+                + Integer.toString(ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE), 36);
+        String header = generation + ":" + chunks.size() + ":" + (useCompressed ? 1 : 0);
+        return new Encoded(withMarker(CHUNKED, header.getBytes(StandardCharsets.US_ASCII)), generation, chunks);
+    }
+
+    public static String chunkPath(String generation, int number) {
+        return generation + "/" + number;
+    }
+
+    /**
+     * @return header if the value is chunked, null otherwise
+     */
+    public static @Nullable ChunkedHeader getChunkedHeader(@Nullable byte[] value) {
+        if (value == null || value.length < 2 || value[0] != MARKER || value[1] != CHUNKED) {
+            return null;
+        }
+        String[] parts = new String(value, 2, value.length - 2, StandardCharsets.US_ASCII).split(":");
+        if (parts.length != 3) {
+            log.warn("Malformed chunked common variable header");
+            return null;
+        }
+        try {
+            return new ChunkedHeader(parts[0], Integer.parseInt(parts[1]), "1".equals(parts[2]));
+        } catch (NumberFormatException e) {
+            log.warn("Malformed chunks count in chunked common variable header: {}", parts[1]);
+            return null;
+        }
+    }
+
+    /**
+     * @param chunks source of chunks, used only for chunked values
+     * @throws ConsulException if a chunk is missing
+     */
+    public static String decode(@Nullable byte[] value, ChunkSource chunks) {
+        if (value == null) {
+            return "";
+        }
+        if (value.length < 2 || value[0] != MARKER) {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+        if (value[1] == GZIP) {
+            return new String(gunzip(Arrays.copyOfRange(value, 2, value.length)), StandardCharsets.UTF_8);
+        }
+
+        ChunkedHeader header = getChunkedHeader(value);
+        if (header == null) {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        for (int i = 0; i < header.count(); i++) {
+            byte[] chunk = chunks.getChunk(chunkPath(header.generation(), i));
+            if (chunk == null) {
+                throw new ConsulException("Chunk " + i + " of generation " + header.generation() + " is missing");
+            }
+            payload.writeBytes(chunk);
+        }
+        byte[] bytes = header.compressed() ? gunzip(payload.toByteArray()) : payload.toByteArray();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] withMarker(byte type, byte[] payload) {
+        byte[] result = new byte[payload.length + 2];
+        result[0] = MARKER;
+        result[1] = type;
+        System.arraycopy(payload, 0, result, 2, payload.length);
+        return result;
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] data) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return gzip.readAllBytes();
+        } catch (IOException e) {
+            throw new ConsulException("Failed to decompress common variable value: " + e.getMessage());
+        }
+    }
+}
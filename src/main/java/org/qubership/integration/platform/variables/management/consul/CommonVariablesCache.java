@@ -0,0 +1,172 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory copy of common variables, kept up to date by {@link CommonVariablesWatcher}
+ */
+@Slf4j
+@Component
+public class CommonVariablesCache {
+    private static final String METRICS_PREFIX = "qip.common.variables.cache";
+
+    private final Duration maxStaleness;
+    private final Counter hits;
+    private final Counter misses;
+
+    private volatile CommonVariablesSnapshot snapshot;
+
+    // Snapshot is bypassed after a local write until the watcher observes the index of the write
+    private final AtomicReference<Invalidation> invalidation = new AtomicReference<>(new Invalidation(0, 0));
+    private final AtomicLong localWrites = new AtomicLong();
+
+    /**
+     * @param index snapshots with a lower index do not contain the local writes
+     * @param time  time of the last local write, the invalidation expires after max staleness
+     */
+    private record Invalidation(long index, long time) {
+    }
+
+    @Autowired
+    public CommonVariablesCache(MeterRegistry meterRegistry,
+                                @Value("${consul.watch.max-staleness}") Duration maxStaleness) {
+        this.maxStaleness = maxStaleness;
+        this.hits = Counter.builder(METRICS_PREFIX + ".requests")
+                .description("Common variables reads served from memory")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder(METRICS_PREFIX + ".requests")
+                .description("Common variables reads served from memory")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        TimeGauge.builder(METRICS_PREFIX + ".staleness", this, TimeUnit.MILLISECONDS, CommonVariablesCache::getStalenessMillis)
+                .description("Time since consul last confirmed the cached snapshot")
+                .register(meterRegistry);
+        Gauge.builder(METRICS_PREFIX + ".index", this, cache -> cache.snapshot == null ? Double.NaN : cache.snapshot.index())
+                .description("Consul index of the cached snapshot")
+                .register(meterRegistry);
+        Gauge.builder(METRICS_PREFIX + ".size", this, cache -> cache.snapshot == null ? Double.NaN : cache.snapshot.variables().size())
+                .description("Number of cached common variables")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return cached variables, empty if the snapshot is missing, stale or invalidated by a local write
+     */
+    public Optional<Map<String, String>> getVariables() {
+        return getSnapshot().map(CommonVariablesSnapshot::variables);
+    }
+
+    public Optional<CommonVariablesSnapshot> getSnapshot() {
+        CommonVariablesSnapshot current = snapshot;
+        if (current != null && isUsable(current)) {
+            hits.increment();
+            return Optional.of(current);
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Unlike {@link CommonVariablesCache#getSnapshot()}, local writes are not taken into account,
+     * so the snapshot stays consistent with {@link CommonVariablesTombstones} and {@link CommonVariablesChangeFeed}
+     * @return the last snapshot if consul confirmed it within max staleness
+     */
+    public Optional<CommonVariablesSnapshot> getConfirmedSnapshot() {
+        CommonVariablesSnapshot current = snapshot;
+        if (current == null || System.currentTimeMillis() - current.syncTime() > maxStaleness.toMillis()) {
+            return Optional.empty();
+        }
+        return Optional.of(current);
+    }
+
+    @Nullable
+    CommonVariablesSnapshot peek() {
+        return snapshot;
+    }
+
+    void update(CommonVariablesSnapshot newSnapshot) {
+        CommonVariablesSnapshot current = snapshot;
+        if (current != null && current.index() == newSnapshot.index()) {
+            snapshot = current.confirm(newSnapshot.syncTime());
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Common variables snapshot updated to index {}, {} variables",
+                    newSnapshot.index(), newSnapshot.variables().size());
+        }
+        snapshot = newSnapshot;
+    }
+
+    void clear() {
+        snapshot = null;
+    }
+
+    /**
+     * Must be called after every successful write to the common variables KV, so readers do not see the value
+     * from before the write. Failed writes don't call it: the snapshot is kept, the watcher delivers whatever
+     * consul applied, as with writes of other instances
+     * @param writeIndex consul index the write was applied at, 0 - unknown, a snapshot newer than the current one is awaited
+     */
+    public void invalidate(long writeIndex) {
+        CommonVariablesSnapshot current = snapshot;
+        long index = writeIndex > 0 ? writeIndex : (current == null ? 0 : current.index() + 1);
+        Invalidation written = new Invalidation(index, System.currentTimeMillis());
+        invalidation.accumulateAndGet(written, (previous, next) ->
+                new Invalidation(Math.max(previous.index(), next.index()), Math.max(previous.time(), next.time())));
+        localWrites.incrementAndGet();
+    }
+
+    /**
+     * @return number of local writes, changes with every {@link CommonVariablesCache#invalidate(long)}
+     */
+    public long getLocalWrites() {
+        return localWrites.get();
+    }
+
+    private boolean isUsable(CommonVariablesSnapshot current) {
+        long now = System.currentTimeMillis();
+        if (now - current.syncTime() > maxStaleness.toMillis()) {
+            return false;
+        }
+        // Expiration covers a consul index reset, snapshots after it never reach the index of the write
+        Invalidation written = invalidation.get();
+        return current.index() >= written.index() || now - written.time() > maxStaleness.toMillis();
+    }
+
+    private double getStalenessMillis() {
+        CommonVariablesSnapshot current = snapshot;
+        return current == null ? Double.NaN : System.currentTimeMillis() - current.syncTime();
+    }
+}
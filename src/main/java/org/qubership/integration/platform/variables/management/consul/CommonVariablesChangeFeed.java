@@ -0,0 +1,195 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Changes of common variables derived from the snapshots of {@link CommonVariablesWatcher},
+ * so any number of clients share a single consul blocking query.
+ * The last changes are kept in a bounded log, clients behind the log must resync.
+ */
+@Slf4j
+@Component
+public class CommonVariablesChangeFeed {
+    private final int capacity;
+    // Listeners are notified off the watcher thread, so a slow client doesn't delay the cache sync
+    private final ExecutorService dispatcher;
+    private final Set<Consumer<CommonVariablesChanges>> listeners = ConcurrentHashMap.newKeySet();
+
+    // Guarded by this
+    private final Deque<CommonVariableChange> changes = new ArrayDeque<>();
+    private final List<Waiter> waiters = new ArrayList<>();
+    // Index of the last observed snapshot, 0 - nothing observed yet
+    private long currentIndex;
+    // All changes after this index are in the log
+    private long completeFrom;
+
+    private record Waiter(long index, CompletableFuture<CommonVariablesChanges> future) {
+    }
+
+    @Autowired
+    public CommonVariablesChangeFeed(@Value("${consul.watch.feed.capacity}") int capacity) {
+        this.capacity = capacity;
+        this.dispatcher = Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
+                .namingPattern("common-variables-feed-%d")
+                .daemon(true)
+                .build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+    }
+
+    public synchronized long getCurrentIndex() {
+        return currentIndex;
+    }
+
+    /**
+     * @param index last index known to the client, 0 - the client has no state
+     */
+    public synchronized CommonVariablesChanges changesSince(long index) {
+        if (currentIndex == 0) {
+            return new CommonVariablesChanges(0, false, Collections.emptyList());
+        }
+        if (index < completeFrom || index > currentIndex) {
+            return new CommonVariablesChanges(currentIndex, true, Collections.emptyList());
+        }
+
+        LinkedList<CommonVariableChange> result = new LinkedList<>();
+        Iterator<CommonVariableChange> iterator = changes.descendingIterator();
+        while (iterator.hasNext()) {
+            CommonVariableChange change = iterator.next();
+            if (change.index() <= index) {
+                break;
+            }
+            result.addFirst(change);
+        }
+        return new CommonVariablesChanges(currentIndex, false, new ArrayList<>(result));
+    }
+
+    /**
+     * @return completed with the changes after the index as soon as there are any,
+     * cancel the future to stop waiting
+     */
+    public synchronized CompletableFuture<CommonVariablesChanges> awaitChanges(long index) {
+        CommonVariablesChanges current = changesSince(index);
+        if (currentIndex > 0 && (current.resync() || index < currentIndex)) {
+            return CompletableFuture.completedFuture(current);
+        }
+
+        Waiter waiter = new Waiter(index, new CompletableFuture<>());
+        waiters.add(waiter);
+        waiter.future().whenComplete((result, error) -> removeWaiter(waiter));
+        return waiter.future();
+    }
+
+    /**
+     * @param listener notified with every new portion of changes or a resync
+     * @return unsubscribe action
+     */
+    public Runnable subscribe(Consumer<CommonVariablesChanges> listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    void onSnapshot(@Nullable CommonVariablesSnapshot previous, CommonVariablesSnapshot current) {
+        CommonVariablesChanges published;
+        List<Waiter> ready = new ArrayList<>();
+        synchronized (this) {
+            if (current.index() == currentIndex) {
+                return;
+            }
+            if (previous == null || current.index() < currentIndex) {
+                // First snapshot or consul index reset, nothing is known about the changes before it
+                changes.clear();
+                completeFrom = current.index();
+                currentIndex = current.index();
+                published = new CommonVariablesChanges(currentIndex, true, Collections.emptyList());
+            } else {
+                List<CommonVariableChange> diff = diff(previous.variables(), current.variables(), current.index());
+                changes.addAll(diff);
+                while (changes.size() > capacity) {
+                    completeFrom = changes.removeFirst().index();
+                }
+                currentIndex = current.index();
+                published = new CommonVariablesChanges(currentIndex, false, diff);
+            }
+
+            Iterator<Waiter> iterator = waiters.iterator();
+            while (iterator.hasNext()) {
+                Waiter waiter = iterator.next();
+                // Waiters ahead of the new index are behind a reset and get a resync
+                if (waiter.index() != currentIndex) {
+                    ready.add(waiter);
+                    iterator.remove();
+                }
+            }
+        }
+
+        for (Waiter waiter : ready) {
+            waiter.future().complete(changesSince(waiter.index()));
+        }
+        if (!listeners.isEmpty() && (published.resync() || !published.changes().isEmpty())) {
+            dispatcher.execute(() -> notifyListeners(published));
+        }
+    }
+
+    private void notifyListeners(CommonVariablesChanges published) {
+        for (Consumer<CommonVariablesChanges> listener : listeners) {
+            try {
+                listener.accept(published);
+            } catch (Exception e) {
+                log.warn("Failed to notify common variables changes listener: {}", e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void removeWaiter(Waiter waiter) {
+        waiters.remove(waiter);
+    }
+
+    private static List<CommonVariableChange> diff(Map<String, String> previous, Map<String, String> current, long index) {
+        List<CommonVariableChange> diff = new ArrayList<>();
+        for (Map.Entry<String, String> variable : current.entrySet()) {
+            if (!variable.getValue().equals(previous.get(variable.getKey()))) {
+                diff.add(new CommonVariableChange(variable.getKey(), variable.getValue(), false, index));
+            }
+        }
+        for (String name : previous.keySet()) {
+            if (!current.containsKey(name)) {
+                diff.add(new CommonVariableChange(name, null, true, index));
+            }
+        }
+        diff.sort(Comparator.comparing(CommonVariableChange::name));
+        return diff;
+    }
+}
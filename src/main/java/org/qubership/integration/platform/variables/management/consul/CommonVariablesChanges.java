@@ -0,0 +1,29 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import java.util.List;
+
+/**
+ * Common variables changes after a client index
+ *
+ * @param index   consul index the changes are up to, the next request should continue from it
+ * @param resync  the changes after the client index are not known, the client must read all variables again
+ * @param changes ordered by index
+ */
+public record CommonVariablesChanges(long index, boolean resync, List<CommonVariableChange> changes) {
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Common variables created, modified or deleted after a client index
+ *
+ * @param index      consul index the delta is up to, the next request should be made since it
+ * @param fullResync the delta is not known, {@code changed} contains all variables and replaces the client state
+ * @param changed    created or modified variables
+ * @param deleted    names of deleted variables
+ */
+public record CommonVariablesDelta(long index, boolean fullResync, Map<String, String> changed, Set<String> deleted) {
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming reader of a recursive KV response with common variables.
+ * Walks the JSON array token by token, keeps only direct (level 1) children of the prefix
+ * and decodes their base64 values straight into the result map.
+ * Values encoded by {@link CommonVariableCodec} are decoded, chunked ones are assembled from their sub-keys.
+ */
+@Slf4j
+public class CommonVariablesReader implements KVResponseReader<Map<String, String>> {
+    private static final String KEY_FIELD = "Key";
+    private static final String VALUE_FIELD = "Value";
+    private static final String MODIFY_INDEX_FIELD = "ModifyIndex";
+
+    // Consul keys have no leading slash
+    private final String keyPrefix;
+    @Nullable
+    private final Map<String, Long> modifyIndexes;
+
+    /**
+     * @param keyPrefix path of the variables folder, with or without a leading slash
+     */
+    public CommonVariablesReader(String keyPrefix) {
+        this(keyPrefix, null);
+    }
+
+    /**
+     * @param modifyIndexes if not null, filled with ModifyIndex of every read variable
+     */
+    public CommonVariablesReader(String keyPrefix, @Nullable Map<String, Long> modifyIndexes) {
+        String prefix = keyPrefix.startsWith("/") ? keyPrefix.substring(1) : keyPrefix;
+        this.keyPrefix = prefix.endsWith("/") ? prefix : prefix + "/";
+        this.modifyIndexes = modifyIndexes;
+    }
+
+    @Override
+    public Map<String, String> read(JsonParser parser) throws IOException {
+        Map<String, String> variables = new HashMap<>();
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            return variables;
+        }
+
+        // Chunks are stored in sub-keys of the variable and assembled after the whole response is read
+        Map<String, byte[]> chunkedHeaders = new HashMap<>();
+        Map<String, Map<String, byte[]>> chunks = new HashMap<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String name = null;
+            String[] chunkRef = null;
+            boolean nameResolved = false;
+            byte[] value = null;
+            long modifyIndex = 0;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if (KEY_FIELD.equals(field)) {
+                    String key = parser.getText();
+                    name = getVariableName(key);
+                    chunkRef = name == null ? getChunkRef(key) : null;
+                    nameResolved = true;
+                } else if (VALUE_FIELD.equals(field) && token != JsonToken.VALUE_NULL
+                        && (!nameResolved || name != null || chunkRef != null)) {
+                    value = parser.getBinaryValue(Base64Variants.MIME_NO_LINEFEEDS);
+                } else if (MODIFY_INDEX_FIELD.equals(field) && modifyIndexes != null) {
+                    modifyIndex = parser.getLongValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            if (name != null) {
+                if (CommonVariableCodec.getChunkedHeader(value) != null) {
+                    chunkedHeaders.put(name, value);
+                    variables.put(name, "");
+                } else {
+                    variables.put(name, decode(name, value, path -> null));
+                }
+                if (modifyIndexes != null) {
+                    modifyIndexes.put(name, modifyIndex);
+                }
+            } else if (chunkRef != null && value != null) {
+                chunks.computeIfAbsent(chunkRef[0], k -> new HashMap<>()).put(chunkRef[1], value);
+            }
+        }
+
+        chunkedHeaders.forEach((name, header) -> {
+            Map<String, byte[]> variableChunks = chunks.getOrDefault(name, Collections.emptyMap());
+            variables.put(name, decode(name, header, variableChunks::get));
+        });
+        return variables;
+    }
+
+    private static String decode(String name, @Nullable byte[] value, CommonVariableCodec.ChunkSource chunks) {
+        try {
+            return CommonVariableCodec.decode(value, chunks);
+        } catch (ConsulException e) {
+            // A broken value must not hide the other variables
+            log.error("Failed to decode value of common variable {}: {}", name, e.getMessage());
+            return "";
+        }
+    }
+
+    /**
+     * @return variable name and chunk path if the key is {@code <prefix><variable>/<generation>/<n>}, null otherwise
+     */
+    private @Nullable String[] getChunkRef(String key) {
+        if (!key.startsWith(keyPrefix)) {
+            return null;
+        }
+        String[] parts = key.substring(keyPrefix.length()).split("/");
+        if (parts.length != 3 || parts[0].isEmpty() || parts[1].isEmpty() || parts[2].isEmpty()) {
+            return null;
+        }
+        return new String[]{parts[0], parts[1] + "/" + parts[2]};
+    }
+
+    /**
+     * @return variable name if the key is a non-empty direct child of the prefix (trailing slashes are ignored), null otherwise
+     */
+    String getVariableName(String key) {
+        if (!key.startsWith(keyPrefix)) {
+            return null;
+        }
+        int from = keyPrefix.length();
+        int to = key.length();
+        while (to > from && key.charAt(to - 1) == '/') {
+            to--;
+        }
+        if (to == from) {
+            return null;
+        }
+        int slash = key.indexOf('/', from);
+        return slash >= 0 && slash < to ? null : key.substring(from, to);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import java.util.Map;
+
+/**
+ * Immutable view of the common variables KV prefix as of a consul index
+ *
+ * @param index     X-Consul-Index the snapshot was read at
+ * @param variables     variable name to decoded value
+ * @param modifyIndexes variable name to ModifyIndex of its key
+ * @param syncTime      last time (epoch millis) consul confirmed this snapshot is current
+ */
+public record CommonVariablesSnapshot(long index, Map<String, String> variables, Map<String, Long> modifyIndexes,
+                                      long syncTime) {
+    public CommonVariablesSnapshot {
+        variables = Map.copyOf(variables);
+        modifyIndexes = Map.copyOf(modifyIndexes);
+    }
+
+    public CommonVariablesSnapshot confirm(long syncTime) {
+        return new CommonVariablesSnapshot(index, variables, modifyIndexes, syncTime);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Bounded log of common variables deletions observed by {@link CommonVariablesWatcher}.
+ * Consul keeps no trace of deleted keys, so deltas can report deletions only as far back as this log goes.
+ */
+@Component
+public class CommonVariablesTombstones {
+    private record Tombstone(String name, long index) {
+    }
+
+    private final int capacity;
+
+    // Guarded by this
+    private final Deque<Tombstone> tombstones = new ArrayDeque<>();
+    // All deletions after this index are in the log, Long.MAX_VALUE - nothing observed yet
+    private long completeFrom = Long.MAX_VALUE;
+
+    @Autowired
+    public CommonVariablesTombstones(@Value("${consul.watch.tombstones.capacity}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return names of variables deleted after {@code since} up to {@code until} inclusive,
+     * null if the log does not reach back to {@code since}
+     */
+    public synchronized @Nullable Set<String> deletedBetween(long since, long until) {
+        if (since < completeFrom) {
+            return null;
+        }
+        Set<String> deleted = new HashSet<>();
+        Iterator<Tombstone> iterator = tombstones.descendingIterator();
+        while (iterator.hasNext()) {
+            Tombstone tombstone = iterator.next();
+            if (tombstone.index() <= since) {
+                break;
+            }
+            if (tombstone.index() <= until) {
+                deleted.add(tombstone.name());
+            }
+        }
+        return deleted;
+    }
+
+    synchronized void onSnapshot(@Nullable CommonVariablesSnapshot previous, CommonVariablesSnapshot current) {
+        if (previous == null || current.index() < previous.index()) {
+            // First snapshot or consul index reset, earlier deletions are unknown
+            tombstones.clear();
+            completeFrom = current.index();
+            return;
+        }
+        for (String name : previous.variables().keySet()) {
+            if (!current.variables().containsKey(name)) {
+                tombstones.addLast(new Tombstone(name, current.index()));
+            }
+        }
+        while (tombstones.size() > capacity) {
+            completeFrom = tombstones.removeFirst().index();
+        }
+    }
+}
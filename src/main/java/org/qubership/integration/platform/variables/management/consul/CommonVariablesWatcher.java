@@ -0,0 +1,150 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps {@link CommonVariablesCache} in sync with consul using blocking queries on the common variables prefix
+ * and publishes the observed changes to {@link CommonVariablesChangeFeed}
+ */
+@Slf4j
+@Component
+public class CommonVariablesWatcher {
+    private final ConsulService consulService;
+    private final CommonVariablesCache cache;
+    private final CommonVariablesChangeFeed changeFeed;
+    private final CommonVariablesTombstones tombstones;
+    private final boolean enabled;
+    private final String waitTimeout;
+    private final long retryDelay;
+
+    private volatile boolean running;
+    private Thread watcherThread;
+
+    @Autowired
+    public CommonVariablesWatcher(ConsulService consulService,
+                                  CommonVariablesCache cache,
+                                  CommonVariablesChangeFeed changeFeed,
+                                  CommonVariablesTombstones tombstones,
+                                  @Value("${consul.watch.enabled}") boolean enabled,
+                                  @Value("${consul.watch.wait}") String waitTimeout,
+                                  @Value("${consul.watch.retry-delay}") Duration retryDelay) {
+        this.consulService = consulService;
+        this.cache = cache;
+        this.changeFeed = changeFeed;
+        this.tombstones = tombstones;
+        this.enabled = enabled;
+        this.waitTimeout = waitTimeout;
+        this.retryDelay = retryDelay.toMillis();
+    }
+
+    @EventListener
+    public synchronized void onApplicationEvent(ApplicationStartedEvent event) {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        watcherThread = new Thread(this::watch, "common-variables-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        log.info("Common variables watcher started");
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (watcherThread != null) {
+            watcherThread.interrupt();
+            watcherThread = null;
+        }
+    }
+
+    private void watch() {
+        long index = 0;
+        while (running) {
+            try {
+                long newIndex = poll(index);
+                if (newIndex > 0) {
+                    // Consul may reset the index (e.g. after snapshot restore), the next query must start over
+                    index = newIndex < index ? 0 : newIndex;
+                    continue;
+                }
+                log.warn("Consul returned no index for common variables, retry in {} ms", retryDelay);
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Failed to watch common variables changes, retry in {} ms: {}", retryDelay, e.getMessage());
+            }
+            index = 0;
+            if (!pause()) {
+                break;
+            }
+        }
+        log.info("Common variables watcher stopped");
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(retryDelay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private long poll(long index) {
+        long newIndex;
+        Map<String, String> variables;
+        Map<String, Long> modifyIndexes = new HashMap<>();
+        try {
+            Pair<Long, Map<String, String>> response =
+                    consulService.waitForCommonVariablesChanges(index, waitTimeout, modifyIndexes);
+            newIndex = response.getLeft();
+            variables = response.getRight();
+        } catch (KVNotFoundException kvnfe) {
+            newIndex = kvnfe.getIndex();
+            variables = Collections.emptyMap();
+            modifyIndexes.clear();
+        }
+
+        if (newIndex > 0) {
+            CommonVariablesSnapshot previous = cache.peek();
+            CommonVariablesSnapshot snapshot =
+                    new CommonVariablesSnapshot(newIndex, variables, modifyIndexes, System.currentTimeMillis());
+            // Deletions must be logged before the snapshot becomes visible to deltas
+            tombstones.onSnapshot(previous, snapshot);
+            cache.update(snapshot);
+            changeFeed.onSnapshot(previous, snapshot);
+        }
+        return newIndex;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Count based circuit breaker of consul requests.
+ * Opens when the failure rate of the last window-size calls reaches the threshold, rejects calls while open,
+ * then lets a limited number of trial calls through (half-open) and closes if all of them succeed.
+ * Only unavailability counts as a failure: I/O errors, timeouts and 5xx responses.
+ */
+@Slf4j
+public class ConsulCircuitBreaker {
+    private static final String METRICS_PREFIX = "qip.consul.circuit.breaker";
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+
+    private final Counter successes;
+    private final Counter failures;
+    private final Counter rejections;
+
+    // Outcomes of the last calls in closed state, true - failure
+    private final boolean[] window;
+    private int windowPosition;
+    private int windowCalls;
+    private int windowFailures;
+
+    @Getter
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenStarted;
+    private int halfOpenSucceeded;
+
+    /**
+     * @param failureRateThreshold percent of failed calls in the window to open the breaker
+     */
+    public ConsulCircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold,
+                                Duration openDuration, int halfOpenCalls, MeterRegistry meterRegistry) {
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.window = new boolean[windowSize];
+
+        this.successes = callsCounter("success", meterRegistry);
+        this.failures = callsCounter("failure", meterRegistry);
+        this.rejections = callsCounter("rejected", meterRegistry);
+        Gauge.builder(METRICS_PREFIX + ".state", this, breaker -> breaker.state.ordinal())
+                .description("Consul circuit breaker state, 0 - closed, 1 - half-open, 2 - open")
+                .register(meterRegistry);
+    }
+
+    private static Counter callsCounter(String result, MeterRegistry meterRegistry) {
+        return Counter.builder(METRICS_PREFIX + ".calls")
+                .description("Consul requests passed through the circuit breaker")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @throws ConsulUnavailableException if the breaker is open
+     */
+    public <T> T call(Supplier<T> request) {
+        boolean trial = acquirePermission();
+        try {
+            T result = request.get();
+            onResult(trial, false);
+            return result;
+        } catch (RuntimeException e) {
+            onResult(trial, isFailure(e));
+            throw e;
+        }
+    }
+
+    public static boolean isFailure(Throwable e) {
+        return ExceptionUtils.indexOfType(e, ResourceAccessException.class) >= 0
+                || ExceptionUtils.indexOfType(e, HttpServerErrorException.class) >= 0;
+    }
+
+    /**
+     * @return true if the call is a half-open trial
+     */
+    private synchronized boolean acquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                rejections.increment();
+                throw new ConsulUnavailableException("Consul is unavailable, requests are rejected by the circuit breaker");
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenStarted >= halfOpenCalls) {
+                rejections.increment();
+                throw new ConsulUnavailableException("Consul is unavailable, waiting for circuit breaker trial requests");
+            }
+            halfOpenStarted++;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void onResult(boolean trial, boolean failure) {
+        (failure ? failures : successes).increment();
+        if (trial) {
+            if (state != State.HALF_OPEN) {
+                return;
+            }
+            if (failure) {
+                transitionTo(State.OPEN);
+            } else if (++halfOpenSucceeded >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            return;
+        }
+
+        if (windowCalls == windowSize) {
+            windowFailures -= window[windowPosition] ? 1 : 0;
+        } else {
+            windowCalls++;
+        }
+        window[windowPosition] = failure;
+        windowFailures += failure ? 1 : 0;
+        windowPosition = (windowPosition + 1) % windowSize;
+
+        if (windowCalls >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCalls) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State newState) {
+        log.warn("Consul circuit breaker state changed from {} to {}", state, newState);
+        state = newState;
+        switch (newState) {
+            case OPEN -> openedAt = System.nanoTime();
+            case HALF_OPEN -> {
+                halfOpenStarted = 0;
+                halfOpenSucceeded = 0;
+            }
+            case CLOSED -> {
+                windowPosition = 0;
+                windowCalls = 0;
+                windowFailures = 0;
+            }
+        }
+    }
+}
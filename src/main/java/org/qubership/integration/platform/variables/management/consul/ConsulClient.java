@@ -24,22 +24,40 @@ import org.qubership.integration.platform.variables.management.model.consul.txn.
 import org.qubership.integration.platform.variables.management.model.consul.txn.response.TxnResponse;
 import org.qubership.integration.platform.variables.management.model.consul.txn.request.TxnVerb;
 import org.qubership.integration.platform.variables.management.model.consul.txn.response.TxnResponseResult;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 
 @Slf4j
@@ -48,10 +66,20 @@ public class ConsulClient {
     public static final int MAX_TXN_SIZE = 64;
     public static final String CONSUL_TOKEN_HEADER = "X-Consul-Token";
     public static final String CONSUL_INDEX_HEADER = "X-Consul-Index";
+    public static final String CONSUL_LAST_CONTACT_HEADER = "X-Consul-LastContact";
+    public static final String CONSUL_KNOWN_LEADER_HEADER = "X-Consul-KnownLeader";
     public static final String CONSUL_KV_PATH = "/v1/kv";
     public static final String CONSUL_TXN_PATH = "/v1/txn";
-    public static final String CONSUL_KV_QUERY_PARAMS = "?recurse={recurse}&index={index}&wait={wait}";
-    public static final String CONSUL_KV_DELETE_PARAMS = "?recurse={recurse}";
+    public static final String CONSUL_KV_QUERY_PARAMS = "?index={index}&wait={wait}";
+    // Consul enables recurse by the parameter presence, whatever the value is
+    public static final String CONSUL_RECURSE_PARAM = "&recurse";
+    public static final String CONSUL_KV_KEYS_PARAMS = "?keys&separator={separator}";
+    public static final String CONSUL_KV_RAW_PARAMS = "?raw";
+    public static final String CONSUL_STALE_PARAM = "&stale";
+    public static final String CONSUL_KV_DELETE_RECURSE_PARAMS = "?recurse";
+    private static final String TXN_METRICS_PREFIX = "qip.consul.txn";
+    private static final String READ_METRICS_PREFIX = "qip.consul.read";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
 
     private final String consulUrl;
 
@@ -59,16 +87,156 @@ public class ConsulClient {
     private String consulToken;
 
     private final RestTemplate restTemplate;
+    private final ConsulResilience resilience;
+
+    /**
+     * Maximum number of txn chunks of a single bulk request sent to consul concurrently, 1 - sequential.
+     * Each request has its own limit, concurrent requests don't slow each other down
+     */
+    private final int txnParallelism;
+    private final ExecutorService txnExecutor;
+    private final TxnBatchPlanner txnBatchPlanner;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Mode of reads without an explicit one
+     */
+    @Getter
+    private final ConsulReadMode readMode;
+    private final long maxStaleMillis;
+    private final Timer lastContact;
+    private final Counter staleFallbacks;
+    private final AtomicInteger knownLeader = new AtomicInteger(1);
 
     @Autowired
     public ConsulClient(@Qualifier("restTemplateMS") RestTemplate restTemplate,
-                        @Value("${consul.url}") String consulUrl) {
+                        @Value("${consul.url}") String consulUrl,
+                        @Value("${consul.txn.parallelism}") int txnParallelism,
+                        @Value("${consul.txn.max-bytes}") long txnMaxBytes,
+                        @Value("${consul.read.mode}") ConsulReadMode readMode,
+                        @Value("${consul.read.max-stale}") Duration maxStale,
+                        ConsulResilience resilience,
+                        MeterRegistry meterRegistry) {
         this.restTemplate = restTemplate;
+        this.resilience = resilience;
         this.consulUrl = StringUtils.strip(consulUrl, "/");
+        this.txnBatchPlanner = new TxnBatchPlanner(MAX_TXN_SIZE, txnMaxBytes);
+        this.meterRegistry = meterRegistry;
+        this.readMode = readMode;
+        this.maxStaleMillis = maxStale.toMillis();
+        this.lastContact = Timer.builder(READ_METRICS_PREFIX + ".last.contact")
+                .description("Time since the server serving a stale read last contacted the leader")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.staleFallbacks = Counter.builder(READ_METRICS_PREFIX + ".stale.fallbacks")
+                .description("Stale reads repeated in default mode because they exceeded max-stale")
+                .register(meterRegistry);
+        Gauge.builder(READ_METRICS_PREFIX + ".known.leader", knownLeader, AtomicInteger::get)
+                .description("Whether the server serving the last read knew the leader, 1 - yes, 0 - no")
+                .register(meterRegistry);
+        this.txnParallelism = txnParallelism;
+        // Chunks wait for the consul response, a virtual thread per chunk costs nothing while blocked
+        this.txnExecutor = txnParallelism > 1
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("consul-txn-", 0).factory())
+                : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (txnExecutor != null) {
+            txnExecutor.shutdownNow();
+        }
     }
 
     public List<KeyResponse> getKV(String key, boolean recurse) throws KVNotFoundException {
-        return waitForKVChanges(key, recurse, 0, "0").getRight();
+        return getKV(key, recurse, readMode);
+    }
+
+    public List<KeyResponse> getKV(String key, boolean recurse, ConsulReadMode mode) throws KVNotFoundException {
+        return waitForKVChanges(key, recurse, 0, "0", mode).getRight();
+    }
+
+    /**
+     * Lists keys without reading values, keys deeper than the separator are rolled up to a single 'prefix/folder/' entry
+     * @param prefix path with a leading slash (e.g. '/config/test/')
+     * @return keys without a leading slash, empty if there are no keys with the prefix
+     */
+    public List<String> getKeys(String prefix, String separator, ConsulReadMode mode) {
+        return resilience.read(consulUrl, baseUrl -> doGetKeys(baseUrl, prefix, separator, mode));
+    }
+
+    private List<String> doGetKeys(String baseUrl, String prefix, String separator, ConsulReadMode mode) {
+        boolean stale = mode != ConsulReadMode.DEFAULT;
+        HttpEntity<Object> entity = new HttpEntity<>(buildCommonHeaders());
+        try {
+            ResponseEntity<List<String>> response = restTemplate.exchange(
+                    baseUrl + CONSUL_KV_PATH + prefix + CONSUL_KV_KEYS_PARAMS + (stale ? CONSUL_STALE_PARAM : ""),
+                    HttpMethod.GET, entity, new ParameterizedTypeReference<>() {
+                    },
+                    Map.of("separator", separator));
+            if (stale && isTooStale(response.getHeaders())) {
+                return doGetKeys(baseUrl, prefix, separator, ConsulReadMode.DEFAULT);
+            }
+            return response.getBody() == null ? Collections.emptyList() : response.getBody();
+        } catch (HttpClientErrorException hcee) {
+            if (hcee.getStatusCode() == HttpStatus.NOT_FOUND) {
+                return Collections.emptyList();
+            }
+            throw hcee;
+        }
+    }
+
+    /**
+     * Index of the keys with the prefix, read from the leader, so it covers all writes completed before the call
+     * @param prefix path with a leading slash (e.g. '/config/test')
+     * @return X-Consul-Index, the same a blocking query on the prefix returns
+     */
+    public long getIndex(String prefix) {
+        return resilience.read(consulUrl, baseUrl -> doGetIndex(baseUrl, prefix));
+    }
+
+    private long doGetIndex(String baseUrl, String prefix) {
+        HttpEntity<Object> entity = new HttpEntity<>(buildCommonHeaders());
+        try {
+            ResponseEntity<String> response = restTemplate.exchange(
+                    baseUrl + CONSUL_KV_PATH + prefix + CONSUL_KV_KEYS_PARAMS,
+                    HttpMethod.GET, entity, String.class,
+                    Map.of("separator", "/"));
+            return parseIndex(response.getHeaders());
+        } catch (HttpClientErrorException hcee) {
+            if (hcee.getStatusCode() == HttpStatus.NOT_FOUND) {
+                return parseIndex(hcee.getResponseHeaders());
+            }
+            throw hcee;
+        }
+    }
+
+    /**
+     * Reads a single value as is, without JSON and base64 encoding
+     * @param key path with a leading slash (e.g. '/config/test/key')
+     * @return value, null if the key is not present
+     */
+    public @Nullable byte[] getRawValue(String key, ConsulReadMode mode) {
+        return resilience.read(consulUrl, baseUrl -> doGetRawValue(baseUrl, key, mode));
+    }
+
+    private @Nullable byte[] doGetRawValue(String baseUrl, String key, ConsulReadMode mode) {
+        boolean stale = mode != ConsulReadMode.DEFAULT;
+        HttpEntity<Object> entity = new HttpEntity<>(buildCommonHeaders());
+        try {
+            ResponseEntity<byte[]> response = restTemplate.exchange(
+                    baseUrl + CONSUL_KV_PATH + key + CONSUL_KV_RAW_PARAMS + (stale ? CONSUL_STALE_PARAM : ""),
+                    HttpMethod.GET, entity, byte[].class);
+            if (stale && isTooStale(response.getHeaders())) {
+                return doGetRawValue(baseUrl, key, ConsulReadMode.DEFAULT);
+            }
+            return response.getBody() == null ? new byte[0] : response.getBody();
+        } catch (HttpClientErrorException hcee) {
+            if (hcee.getStatusCode() == HttpStatus.NOT_FOUND) {
+                return null;
+            }
+            throw hcee;
+        }
     }
 
     /**
@@ -76,7 +244,7 @@ public class ConsulClient {
      * @param keys path without leading slash (e.g. 'config/test/key')
      */
     public List<KVResponse> getKVsInTransaction(List<String> keys) throws ConsulException {
-        return doTxnBatchedRequest(
+        return doTxnBatchedRequest("get",
                 keys.stream()
                         .map(key -> new TxnRequest(
                                 TxnKVRequest.builder()
@@ -84,10 +252,17 @@ public class ConsulClient {
                                         .key(key)
                                         .build()))
                         .toList()
-        ).getResults().stream().map(TxnResponseResult::getKv).toList();
+        ).getResults().stream().<KVResponse>map(TxnResponseResult::getKv).toList();
     }
 
     public void createOrUpdateKV(String key, Object value) {
+        resilience.write(() -> {
+            doCreateOrUpdateKV(key, value);
+            return null;
+        });
+    }
+
+    private void doCreateOrUpdateKV(String key, Object value) {
         HttpEntity<Object> entity = new HttpEntity<>(value, buildCommonHeaders());
         ResponseEntity<String> response = restTemplate.exchange(consulUrl + CONSUL_KV_PATH + key,
                 HttpMethod.PUT, entity, String.class);
@@ -105,25 +280,103 @@ public class ConsulClient {
 
     /**
      * @param map key/value mapping, key - path without a leading slash (e.g. 'config/test/key')
+     * @return new ModifyIndex by key
+     */
+    public Map<String, Long> createOrUpdateKVsInTransaction(Map<String, byte[]> map) {
+        return createOrUpdateKVsInTransaction(map, Collections.emptyMap());
+    }
+
+    /**
+     * @param deleteTrees prefix (e.g. 'config/test/key/sub/') by key, removed in the same txn as the key is written
+     * @return new ModifyIndex by key
      */
-    public void createOrUpdateKVsInTransaction(Map<String, String> map) {
-        doTxnBatchedRequest(
+    public Map<String, Long> createOrUpdateKVsInTransaction(Map<String, byte[]> map, Map<String, String> deleteTrees) {
+        return getModifyIndexes(doTxnGroupedRequest("set",
                 map.entrySet().stream()
-                        .map(entry -> new TxnRequest(
-                                TxnKVRequest.builder()
-                                        .verb(TxnVerb.SET)
-                                        .key(entry.getKey())
-                                        .value(entry.getValue())
-                                        .build()))
-                        .toList()
-                );
+                        .map(entry -> withDeleteTree(
+                                binaryKVRequest(TxnVerb.SET, entry.getKey(), entry.getValue(), null),
+                                deleteTrees.get(entry.getKey())))
+                        .toList()));
+    }
+
+    private static Map<String, Long> getModifyIndexes(TxnResponse response) {
+        Map<String, Long> modifyIndexes = new HashMap<>();
+        if (response.getResults() != null) {
+            for (TxnResponseResult result : response.getResults()) {
+                if (result.getKv() != null) {
+                    modifyIndexes.put(result.getKv().getKey(), result.getKv().getModifyIndex());
+                }
+            }
+        }
+        return modifyIndexes;
+    }
+
+    /**
+     * Check-and-set write of a single key
+     * @param key path without leading slash (e.g. 'config/test/key')
+     * @param index expected ModifyIndex of the key, 0 - the key must not exist
+     * @return new ModifyIndex of the key
+     * @throws TxnConflictException if the key was modified since the expected index
+     */
+    public long casKV(String key, byte[] value, long index) throws ConsulException {
+        return casKV(key, value, index, null);
+    }
+
+    /**
+     * @param deleteTree prefix (e.g. 'config/test/key/sub/') removed in the same txn if the write succeeds
+     */
+    public long casKV(String key, byte[] value, long index, @Nullable String deleteTree) throws ConsulException {
+        return getModifyIndexes(doTxnRequest(withDeleteTree(binaryKVRequest(TxnVerb.CAS, key, value, index), deleteTree)))
+                .getOrDefault(key, 0L);
+    }
+
+    /**
+     * Check-and-set write of several keys. Each txn batch is applied atomically,
+     * batches of a large map are independent, so a conflict may leave preceding batches applied.
+     * @param map key/value mapping, key - path without a leading slash (e.g. 'config/test/key')
+     * @param indexes expected ModifyIndex by key, absent key - the key must not exist
+     * @return new ModifyIndex by key
+     * @throws TxnConflictException if any of the keys was modified since the expected index
+     */
+    public Map<String, Long> casKVsInTransaction(Map<String, byte[]> map, Map<String, Long> indexes) throws ConsulException {
+        return casKVsInTransaction(map, indexes, Collections.emptyMap());
+    }
+
+    /**
+     * @param deleteTrees prefix (e.g. 'config/test/key/sub/') by key, removed in the same txn as the key is written
+     */
+    public Map<String, Long> casKVsInTransaction(Map<String, byte[]> map, Map<String, Long> indexes,
+                                                 Map<String, String> deleteTrees) throws ConsulException {
+        return getModifyIndexes(doTxnGroupedRequest("cas",
+                map.entrySet().stream()
+                        .map(entry -> withDeleteTree(
+                                binaryKVRequest(TxnVerb.CAS, entry.getKey(), entry.getValue(),
+                                        indexes.getOrDefault(entry.getKey(), 0L)),
+                                deleteTrees.get(entry.getKey())))
+                        .toList()));
+    }
+
+    /**
+     * @return the write operation followed by the removal of the prefix, if any
+     */
+    private static List<TxnRequest> withDeleteTree(TxnKVRequest write, @Nullable String deleteTree) {
+        return deleteTree == null
+                ? List.of(new TxnRequest(write))
+                : List.of(new TxnRequest(write), deleteRequest(TxnVerb.DELETE_TREE, deleteTree));
     }
 
     public void deleteKV(String key, boolean recurse) {
+        resilience.write(() -> {
+            doDeleteKV(key, recurse);
+            return null;
+        });
+    }
+
+    private void doDeleteKV(String key, boolean recurse) {
         HttpEntity<Object> entity = new HttpEntity<>(buildCommonHeaders());
-        ResponseEntity<String> response = restTemplate.exchange(consulUrl + CONSUL_KV_PATH + key + CONSUL_KV_DELETE_PARAMS,
-                HttpMethod.DELETE, entity, String.class,
-                Map.of("recurse", recurse));
+        ResponseEntity<String> response = restTemplate.exchange(
+                consulUrl + CONSUL_KV_PATH + key + (recurse ? CONSUL_KV_DELETE_RECURSE_PARAMS : ""),
+                HttpMethod.DELETE, entity, String.class);
 
         if (response.getStatusCode() != HttpStatus.OK) {
             log.error("Failed to remove KEY in consul, code: {}, body: {}",
@@ -140,33 +393,167 @@ public class ConsulClient {
      * @param keys path without leading slash (e.g. 'config/test/key')
      */
     public void deleteKVsInTransaction(List<String> keys) {
-        doTxnBatchedRequest(
+        deleteKVsInTransaction(keys, false);
+    }
+
+    /**
+     * @param keys         path without leading slash (e.g. 'config/test/key')
+     * @param withSubkeys  also delete keys under {@code <key>/}, but not siblings sharing the key as a prefix
+     */
+    public void deleteKVsInTransaction(List<String> keys, boolean withSubkeys) {
+        doTxnBatchedRequest("delete",
                 keys.stream()
-                        .map(key -> new TxnRequest(
-                                TxnKVRequest.builder()
-                                        .verb(TxnVerb.DELETE)
-                                        .key(key)
-                                        .build()))
+                        .flatMap(key -> withSubkeys
+                                ? Stream.of(deleteRequest(TxnVerb.DELETE, key), deleteRequest(TxnVerb.DELETE_TREE, key + "/"))
+                                : Stream.of(deleteRequest(TxnVerb.DELETE, key)))
                         .toList()
         );
     }
 
-    private TxnResponse doTxnBatchedRequest(List<TxnRequest> request) throws ConsulException {
-        if (request.size() <= MAX_TXN_SIZE) {
-            return doTxnRequest(request);
+    private static TxnRequest deleteRequest(TxnVerb verb, String key) {
+        return new TxnRequest(TxnKVRequest.builder()
+                .verb(verb)
+                .key(key)
+                .build());
+    }
+
+    static TxnKVRequest binaryKVRequest(TxnVerb verb, String key, byte[] value, @Nullable Long index) {
+        TxnKVRequest request = new TxnKVRequest(verb, key, null, index);
+        request.setBinaryValue(value);
+        return request;
+    }
+
+    private TxnResponse doTxnBatchedRequest(String operation, List<TxnRequest> request) throws ConsulException {
+        return doTxnBatches(operation, txnBatchPlanner.plan(request));
+    }
+
+    /**
+     * @param groups operations of a group are sent in the same txn
+     */
+    private TxnResponse doTxnGroupedRequest(String operation, List<List<TxnRequest>> groups) throws ConsulException {
+        return doTxnBatches(operation, txnBatchPlanner.planGroups(groups));
+    }
+
+    private TxnResponse doTxnBatches(String operation, List<TxnBatchPlanner.Batch> batches) throws ConsulException {
+        recordTxnBatchMetrics(operation, batches);
+        if (batches.isEmpty()) {
+            return doTxnRequest(Collections.emptyList());
+        }
+        if (batches.size() == 1) {
+            return doTxnRequest(batches.get(0).operations());
+        }
+
+        return txnParallelism > 1
+                ? doTxnBatchesInParallel(batches)
+                : doTxnBatchesSequentially(batches);
+    }
+
+    private TxnResponse doTxnBatchesSequentially(List<TxnBatchPlanner.Batch> batches) throws ConsulException {
+        TxnResponse result = new TxnResponse();
+        for (int i = 0; i < batches.size(); i++) {
+            try {
+                result.merge(doTxnRequest(batches.get(i).operations()));
+            } catch (ConsulException e) {
+                throw toBatchException(batches.size(), batches.size() - i - 1, List.of(batchFailure(batches, i, e)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Batches are sent by the txn executor, at most {@link ConsulClient#txnParallelism} at a time of this request.
+     * After the first failure batches that have not been started yet are skipped.
+     * Results are merged in the batches order.
+     */
+    private TxnResponse doTxnBatchesInParallel(List<TxnBatchPlanner.Batch> batches) throws ConsulException {
+        AtomicBoolean failed = new AtomicBoolean();
+        Semaphore permits = new Semaphore(txnParallelism);
+        Map<String, String> mdcContext = MDC.getCopyOfContextMap();
+        List<Future<TxnResponse>> futures = new ArrayList<>(batches.size());
+
+        for (TxnBatchPlanner.Batch batch : batches) {
+            futures.add(txnExecutor.submit(() -> {
+                permits.acquire();
+                try {
+                    if (failed.get()) {
+                        throw new CancellationException();
+                    }
+                    if (mdcContext != null) {
+                        MDC.setContextMap(mdcContext);
+                    }
+                    return doTxnRequest(batch.operations());
+                } catch (RuntimeException e) {
+                    failed.set(true);
+                    throw e;
+                } finally {
+                    MDC.clear();
+                    permits.release();
+                }
+            }));
         }
 
         TxnResponse result = new TxnResponse();
-        for (List<TxnRequest> txnRequests : ListUtils.partition(request, MAX_TXN_SIZE)) {
-            result.merge(doTxnRequest(txnRequests));
+        List<TxnBatchException.ChunkFailure> failures = new ArrayList<>();
+        int skipped = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                result.merge(futures.get(i).get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof CancellationException) {
+                    skipped++;
+                } else {
+                    failures.add(batchFailure(batches, i, e.getCause()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(future -> future.cancel(true));
+                throw new ConsulException("Interrupted while waiting for consul txn request", e);
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            throw toBatchException(batches.size(), skipped, failures);
         }
         return result;
     }
 
+    private static TxnBatchException.ChunkFailure batchFailure(List<TxnBatchPlanner.Batch> batches, int index, Throwable cause) {
+        TxnBatchPlanner.Batch batch = batches.get(index);
+        return new TxnBatchException.ChunkFailure(index, batch.offset(), batch.offset() + batch.operations().size() - 1, cause);
+    }
+
+    private static ConsulException toBatchException(int chunksCount, int skipped, List<TxnBatchException.ChunkFailure> failures) {
+        TxnBatchException exception = new TxnBatchException(chunksCount, skipped, failures);
+        log.error(exception.getMessage());
+        return exception.isConflict()
+                ? new TxnConflictException(exception.getMessage(), exception)
+                : exception;
+    }
+
+    private void recordTxnBatchMetrics(String operation, List<TxnBatchPlanner.Batch> batches) {
+        DistributionSummary.builder(TXN_METRICS_PREFIX + ".batches")
+                .description("Number of txn requests a bulk consul operation is split into")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .record(batches.size());
+        DistributionSummary batchSize = DistributionSummary.builder(TXN_METRICS_PREFIX + ".batch.size")
+                .description("Estimated body size of a single consul txn request")
+                .baseUnit(BaseUnits.BYTES)
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        batches.forEach(batch -> batchSize.record(batch.bytes()));
+    }
+
     /**
-     * Consul constraint - maximum {@link ConsulClient#MAX_TXN_SIZE} operations per txn request
+     * Consul constraint - maximum {@link ConsulClient#MAX_TXN_SIZE} operations and
+     * {@link ConsulClient#txnBatchPlanner} max bytes per txn request
      */
     private TxnResponse doTxnRequest(List<TxnRequest> request) throws ConsulException {
+        return resilience.txn(() -> doTxnRequestUnprotected(request));
+    }
+
+    private TxnResponse doTxnRequestUnprotected(List<TxnRequest> request) throws ConsulException {
         ResponseEntity<TxnResponse> response = null;
         try {
             HttpEntity<List<TxnRequest>> entity = new HttpEntity<>(request, buildCommonHeaders());
@@ -200,13 +587,29 @@ public class ConsulClient {
     }
 
     public Pair<Long, List<KeyResponse>> waitForKVChanges(String key, boolean recurse, long index, String waitTimeout) throws KVNotFoundException {
+        return waitForKVChanges(key, recurse, index, waitTimeout, readMode);
+    }
+
+    public Pair<Long, List<KeyResponse>> waitForKVChanges(String key, boolean recurse, long index, String waitTimeout,
+                                                          ConsulReadMode mode) throws KVNotFoundException {
+        return index > 0
+                ? resilience.blockingRead(waitTimeout,
+                        () -> doWaitForKVChanges(consulUrl, key, recurse, index, waitTimeout, mode))
+                : resilience.read(consulUrl,
+                        baseUrl -> doWaitForKVChanges(baseUrl, key, recurse, index, waitTimeout, mode));
+    }
+
+    private Pair<Long, List<KeyResponse>> doWaitForKVChanges(String baseUrl, String key, boolean recurse, long index,
+                                                             String waitTimeout, ConsulReadMode mode) throws KVNotFoundException {
+        boolean stale = mode != ConsulReadMode.DEFAULT;
         HttpEntity<Object> entity = new HttpEntity<>(buildCommonHeaders());
         try {
-            ResponseEntity<List<KeyResponse>> response = restTemplate.exchange(consulUrl + CONSUL_KV_PATH + key + CONSUL_KV_QUERY_PARAMS,
+            ResponseEntity<List<KeyResponse>> response = restTemplate.exchange(
+                    baseUrl + CONSUL_KV_PATH + key + CONSUL_KV_QUERY_PARAMS
+                            + (recurse ? CONSUL_RECURSE_PARAM : "") + (stale ? CONSUL_STALE_PARAM : ""),
                     HttpMethod.GET, entity, new ParameterizedTypeReference<>() {
                     },
-                    Map.of("recurse", recurse,
-                            "index", index,
+                    Map.of("index", index,
                             "wait", waitTimeout));
 
             if (response.getStatusCode() != HttpStatus.OK) {
@@ -214,18 +617,101 @@ public class ConsulClient {
                         response.getStatusCode(), response.getBody());
                 throw new RuntimeException("Failed to get KV from consul, response with non 200 code");
             }
+            if (stale && isTooStale(response.getHeaders())) {
+                return doWaitForKVChanges(baseUrl, key, recurse, index, waitTimeout, ConsulReadMode.DEFAULT);
+            }
 
             return Pair.of(
                     Long.parseLong(response.getHeaders().get(CONSUL_INDEX_HEADER).get(0)),
                     response.getBody() == null ? Collections.emptyList() : response.getBody());
         } catch (HttpClientErrorException hcee) {
             if (hcee.getStatusCode() == HttpStatus.NOT_FOUND) {
-                throw new KVNotFoundException("KV not present in consul");
+                throw new KVNotFoundException("KV not present in consul", parseIndex(hcee.getResponseHeaders()));
             }
             throw hcee;
         }
     }
 
+    public <T> Pair<Long, T> waitForKVChanges(String key, boolean recurse, long index, String waitTimeout,
+                                              KVResponseReader<T> reader) throws KVNotFoundException {
+        return waitForKVChanges(key, recurse, index, waitTimeout, readMode, reader);
+    }
+
+    /**
+     * Same as {@link ConsulClient#waitForKVChanges(String, boolean, long, String, ConsulReadMode)}, but the response body
+     * is not materialized as a list of {@link KeyResponse}, it is passed to the reader as a JSON stream
+     */
+    public <T> Pair<Long, T> waitForKVChanges(String key, boolean recurse, long index, String waitTimeout,
+                                              ConsulReadMode mode, KVResponseReader<T> reader) throws KVNotFoundException {
+        return index > 0
+                ? resilience.blockingRead(waitTimeout,
+                        () -> doWaitForKVChanges(consulUrl, key, recurse, index, waitTimeout, mode, reader))
+                : resilience.read(consulUrl,
+                        baseUrl -> doWaitForKVChanges(baseUrl, key, recurse, index, waitTimeout, mode, reader));
+    }
+
+    private <T> Pair<Long, T> doWaitForKVChanges(String baseUrl, String key, boolean recurse, long index, String waitTimeout,
+                                                 ConsulReadMode mode, KVResponseReader<T> reader) throws KVNotFoundException {
+        boolean stale = mode != ConsulReadMode.DEFAULT;
+        Pair<Long, T> result;
+        try {
+            result = restTemplate.execute(
+                    baseUrl + CONSUL_KV_PATH + key + CONSUL_KV_QUERY_PARAMS
+                            + (recurse ? CONSUL_RECURSE_PARAM : "") + (stale ? CONSUL_STALE_PARAM : ""),
+                    HttpMethod.GET,
+                    request -> request.getHeaders().putAll(buildCommonHeaders()),
+                    response -> {
+                        if (response.getStatusCode() != HttpStatus.OK) {
+                            log.error("Failed to get KV from consul, code: {}", response.getStatusCode());
+                            throw new RuntimeException("Failed to get KV from consul, response with non 200 code");
+                        }
+                        // Too stale body is not parsed, the read is repeated in default mode
+                        if (stale && isTooStale(response.getHeaders())) {
+                            return null;
+                        }
+                        try (JsonParser parser = JSON_FACTORY.createParser(response.getBody())) {
+                            return Pair.of(parseIndex(response.getHeaders()), reader.read(parser));
+                        }
+                    },
+                    Map.of("index", index,
+                            "wait", waitTimeout));
+        } catch (HttpClientErrorException hcee) {
+            if (hcee.getStatusCode() == HttpStatus.NOT_FOUND) {
+                throw new KVNotFoundException("KV not present in consul", parseIndex(hcee.getResponseHeaders()));
+            }
+            throw hcee;
+        }
+        return result != null ? result : doWaitForKVChanges(baseUrl, key, recurse, index, waitTimeout, ConsulReadMode.DEFAULT, reader);
+    }
+
+    /**
+     * Records staleness headers of a stale read
+     * @return true if the serving server lost contact with the leader for longer than max-stale
+     */
+    private boolean isTooStale(HttpHeaders headers) {
+        String knownLeaderHeader = headers.getFirst(CONSUL_KNOWN_LEADER_HEADER);
+        if (knownLeaderHeader != null) {
+            knownLeader.set(Boolean.parseBoolean(knownLeaderHeader) ? 1 : 0);
+        }
+        String lastContactHeader = headers.getFirst(CONSUL_LAST_CONTACT_HEADER);
+        if (lastContactHeader == null) {
+            return false;
+        }
+        long lastContactMillis = Long.parseLong(lastContactHeader);
+        lastContact.record(lastContactMillis, TimeUnit.MILLISECONDS);
+        if (lastContactMillis > maxStaleMillis) {
+            log.debug("Stale consul read is {} ms behind the leader, repeating in default mode", lastContactMillis);
+            staleFallbacks.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private static long parseIndex(@Nullable HttpHeaders headers) {
+        String index = headers == null ? null : headers.getFirst(CONSUL_INDEX_HEADER);
+        return index == null ? 0 : Long.parseLong(index);
+    }
+
     private HttpHeaders buildCommonHeaders() {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
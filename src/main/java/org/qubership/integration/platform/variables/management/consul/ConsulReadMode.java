@@ -0,0 +1,36 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+/**
+ * Consistency mode of consul KV reads
+ */
+public enum ConsulReadMode {
+    /**
+     * Served by the leader
+     */
+    DEFAULT,
+    /**
+     * Served by any server, a response lagging behind the leader more than max-stale is re-read in default mode
+     */
+    STALE,
+    /**
+     * Common variables are served from the watched in-memory snapshot, other reads are stale.
+     * Consul agent cache doesn't support KV endpoints.
+     */
+    CACHED
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Response timeout of the consul request executed by the current thread,
+ * applied by the restTemplateMS request factory instead of the default read timeout
+ */
+public final class ConsulRequestTimeout {
+    private static final ThreadLocal<Duration> CURRENT = new ThreadLocal<>();
+
+    private ConsulRequestTimeout() {
+    }
+
+    public static <T> T with(Duration timeout, Supplier<T> request) {
+        Duration previous = CURRENT.get();
+        CURRENT.set(timeout);
+        try {
+            return request.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public static @Nullable Duration current() {
+        return CURRENT.get();
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Failure handling of consul requests: per-operation timeouts, circuit breaker,
+ * retries of idempotent reads and optional hedged reads to a second consul address
+ */
+@Slf4j
+@Component
+public class ConsulResilience {
+    private static final String METRICS_PREFIX = "qip.consul.read";
+    private static final int LATENCY_WINDOW_SIZE = 256;
+
+    private final Duration readTimeout;
+    private final Duration writeTimeout;
+    private final Duration txnTimeout;
+    private final Duration blockingTimeoutMargin;
+
+    private final ConsulCircuitBreaker circuitBreaker;
+    private final RetryTemplate readRetryTemplate;
+
+    // Hedged reads, disabled if the hedge url is empty
+    private final String hedgeUrl;
+    private final double hedgePercentile;
+    private final long hedgeMinDelayNanos;
+    private final ExecutorService hedgeExecutor;
+    private final LatencyWindow readLatencies = new LatencyWindow(LATENCY_WINDOW_SIZE);
+    private final Counter retries;
+    private final Counter hedges;
+
+    @Autowired
+    public ConsulResilience(@Value("${consul.resilience.timeouts.read}") Duration readTimeout,
+                            @Value("${consul.resilience.timeouts.write}") Duration writeTimeout,
+                            @Value("${consul.resilience.timeouts.txn}") Duration txnTimeout,
+                            @Value("${consul.resilience.timeouts.blocking-margin}") Duration blockingTimeoutMargin,
+                            @Value("${consul.resilience.retry.max-attempts}") int retryMaxAttempts,
+                            @Value("${consul.resilience.retry.backoff}") long retryBackoff,
+                            @Value("${consul.resilience.circuit-breaker.window-size}") int windowSize,
+                            @Value("${consul.resilience.circuit-breaker.minimum-calls}") int minimumCalls,
+                            @Value("${consul.resilience.circuit-breaker.failure-rate-threshold}") int failureRateThreshold,
+                            @Value("${consul.resilience.circuit-breaker.open-duration}") Duration openDuration,
+                            @Value("${consul.resilience.circuit-breaker.half-open-calls}") int halfOpenCalls,
+                            @Value("${consul.resilience.hedge.url:}") String hedgeUrl,
+                            @Value("${consul.resilience.hedge.percentile}") double hedgePercentile,
+                            @Value("${consul.resilience.hedge.min-delay}") Duration hedgeMinDelay,
+                            MeterRegistry meterRegistry) {
+        this.readTimeout = readTimeout;
+        this.writeTimeout = writeTimeout;
+        this.txnTimeout = txnTimeout;
+        this.blockingTimeoutMargin = blockingTimeoutMargin;
+        this.circuitBreaker = new ConsulCircuitBreaker(windowSize, minimumCalls, failureRateThreshold,
+                openDuration, halfOpenCalls, meterRegistry);
+        this.retries = Counter.builder(METRICS_PREFIX + ".retries")
+                .description("Consul reads repeated after an unavailability error")
+                .register(meterRegistry);
+        this.hedges = Counter.builder(METRICS_PREFIX + ".hedges")
+                .description("Consul reads duplicated to the hedge address after the latency percentile")
+                .register(meterRegistry);
+        this.readRetryTemplate = RetryTemplate.builder()
+                .maxAttempts(retryMaxAttempts)
+                .exponentialBackoff(retryBackoff, 2, retryBackoff * 16, true)
+                .retryOn(e -> e instanceof ResourceAccessException || e instanceof HttpServerErrorException)
+                .withListener(new RetryListener() {
+                    @Override
+                    public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback,
+                                                                 Throwable throwable) {
+                        retries.increment();
+                    }
+                })
+                .build();
+
+        this.hedgeUrl = StringUtils.isBlank(hedgeUrl) ? null : StringUtils.strip(hedgeUrl, "/");
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeMinDelayNanos = hedgeMinDelay.toNanos();
+        this.hedgeExecutor = this.hedgeUrl == null
+                ? null
+                : Executors.newCachedThreadPool(new BasicThreadFactory.Builder()
+                        .namingPattern("consul-hedge-%d")
+                        .daemon(true)
+                        .build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
+    }
+
+    public ConsulCircuitBreaker.State getCircuitBreakerState() {
+        return circuitBreaker.getState();
+    }
+
+    /**
+     * Idempotent non-blocking read, retried on unavailability and hedged if a hedge address is configured
+     * @param request request to the consul base url it is given
+     */
+    public <T> T read(String consulUrl, Function<String, T> request) {
+        return readRetryTemplate.execute(context -> circuitBreaker.call(() -> hedgeExecutor == null
+                ? timedRead(consulUrl, request)
+                : hedgedRead(consulUrl, request)));
+    }
+
+    /**
+     * Blocking query, not retried, the timeout covers the wait time
+     * @param waitTimeout consul wait parameter, e.g. '30s'
+     */
+    public <T> T blockingRead(String waitTimeout, Supplier<T> request) {
+        Duration wait = DurationStyle.detectAndParse(waitTimeout);
+        // Consul adds up to wait/16 of jitter to the wait time
+        Duration timeout = wait.plus(wait.dividedBy(16)).plus(blockingTimeoutMargin);
+        return circuitBreaker.call(() -> ConsulRequestTimeout.with(timeout, request));
+    }
+
+    public <T> T write(Supplier<T> request) {
+        return circuitBreaker.call(() -> ConsulRequestTimeout.with(writeTimeout, request));
+    }
+
+    public <T> T txn(Supplier<T> request) {
+        return circuitBreaker.call(() -> ConsulRequestTimeout.with(txnTimeout, request));
+    }
+
+    private <T> T timedRead(String url, Function<String, T> request) {
+        long start = System.nanoTime();
+        T result = ConsulRequestTimeout.with(readTimeout, () -> request.apply(url));
+        readLatencies.record(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Sends the read to the primary address, if it doesn't complete within the latency percentile
+     * sends it to the hedge address too, the first successful response wins
+     */
+    private <T> T hedgedRead(String consulUrl, Function<String, T> request) {
+        Map<String, String> mdcContext = MDC.getCopyOfContextMap();
+        CompletableFuture<T> primary = CompletableFuture.supplyAsync(
+                () -> withMdc(mdcContext, () -> timedRead(consulUrl, request)), hedgeExecutor);
+        try {
+            long delay = Math.max(hedgeMinDelayNanos, readLatencies.percentile(hedgePercentile));
+            return primary.get(delay, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            hedges.increment();
+            CompletableFuture<T> hedge = CompletableFuture.supplyAsync(
+                    () -> withMdc(mdcContext, () -> timedRead(hedgeUrl, request)), hedgeExecutor);
+            return await(firstSuccessful(primary, hedge));
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConsulException("Interrupted while waiting for consul read", e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> first, CompletableFuture<T> second) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(2);
+        for (CompletableFuture<T> future : Arrays.asList(first, second)) {
+            future.whenComplete((value, error) -> {
+                if (error == null) {
+                    result.complete(value);
+                } else if (remaining.decrementAndGet() == 0) {
+                    result.completeExceptionally(error);
+                }
+            });
+        }
+        return result;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConsulException("Interrupted while waiting for consul read", e);
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e instanceof RuntimeException runtimeException
+                ? runtimeException
+                : new ConsulException("Consul read failed", e);
+    }
+
+    private static <T> T withMdc(Map<String, String> mdcContext, Supplier<T> request) {
+        if (mdcContext != null) {
+            MDC.setContextMap(mdcContext);
+        }
+        try {
+            return request.get();
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    /**
+     * Latencies of the last successful reads
+     */
+    private static class LatencyWindow {
+        private final long[] latencies;
+        private int position;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.latencies = new long[capacity];
+        }
+
+        synchronized void record(long nanos) {
+            latencies[position] = nanos;
+            position = (position + 1) % latencies.length;
+            size = Math.min(size + 1, latencies.length);
+        }
+
+        /**
+         * @return latency percentile in nanos, 0 if nothing is recorded
+         */
+        synchronized long percentile(double percentile) {
+            if (size == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+}
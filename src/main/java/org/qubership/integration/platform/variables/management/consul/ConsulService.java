@@ -27,17 +27,19 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.util.*;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Component
 public class ConsulService {
     private final ConsulClient client;
+    private final CommonVariablesCache commonVariablesCache;
+    private final CommonVariablesTombstones tombstones;
+    private final CommonVariableCodec codec;
+    private final ConsulWriteCoalescer writeCoalescer;
 
     @Value("${consul.keys.prefix}")
     private String keyPrefix;
@@ -57,14 +59,45 @@ public class ConsulService {
     private String keyCommonVariablesV2;
 
     @Autowired
-    public ConsulService(ConsulClient client) {
+    public ConsulService(ConsulClient client,
+                         CommonVariablesCache commonVariablesCache,
+                         CommonVariablesTombstones tombstones,
+                         CommonVariableCodec codec,
+                         ConsulWriteCoalescer writeCoalescer) {
         this.client = client;
+        this.commonVariablesCache = commonVariablesCache;
+        this.tombstones = tombstones;
+        this.codec = codec;
+        this.writeCoalescer = writeCoalescer;
     }
 
+    /**
+     * Single value is fetched raw, without a JSON envelope and base64, in the configured {@link ConsulReadMode}
+     */
     public @Nullable Pair<String, String> getCommonVariable(String key) {
+        return getCommonVariable(key, client.getReadMode());
+    }
+
+    /**
+     * @param mode {@link ConsulReadMode#DEFAULT} for reads validating a write
+     */
+    public @Nullable Pair<String, String> getCommonVariable(String key, ConsulReadMode mode) {
+        String variableKey = buildCommonVariableKey(key);
+        byte[] value = client.getRawValue(variableKey, mode);
+        return value == null ? null : Pair.of(key, decodeValue(variableKey, value, mode));
+    }
+
+    /**
+     * @return value and ModifyIndex of the variable, null if it does not exist
+     */
+    public @Nullable Pair<String, Long> getCommonVariableWithIndex(String key) {
         try {
-            List<KeyResponse> response = client.getKV(buildCommonVariableKey(key), false);
-            return response.isEmpty() ? null : parseCommonVariable(response.get(0));
+            List<KeyResponse> response = client.getKV(buildCommonVariableKey(key), false, ConsulReadMode.DEFAULT);
+            if (response.isEmpty()) {
+                return null;
+            }
+            KeyResponse kv = response.get(0);
+            return Pair.of(decodeValue(kv.getKey(), kv.getDecodedBytes(), ConsulReadMode.DEFAULT), kv.getModifyIndex());
         } catch (KVNotFoundException kvnfe) {
             return null;
         }
@@ -90,13 +123,146 @@ public class ConsulService {
         return getStringStringMapLegacy(keyCommonVariables + "/" + tenantId);
     }
 
+    /**
+     * Read in the configured {@link ConsulReadMode}
+     */
     public Map<String, String> getAllCommonVariables() {
-        return getStringStringMap(keyCommonVariablesV2);
+        return getAllCommonVariables(client.getReadMode());
+    }
+
+    /**
+     * @param mode {@link ConsulReadMode#CACHED} - served from {@link CommonVariablesCache} when it holds
+     *             an up-to-date snapshot, otherwise read from consul in a stale mode
+     */
+    public Map<String, String> getAllCommonVariables(ConsulReadMode mode) {
+        return mode == ConsulReadMode.CACHED
+                ? commonVariablesCache.getVariables().orElseGet(() -> getStringStringMap(keyCommonVariablesV2, mode))
+                : getStringStringMap(keyCommonVariablesV2, mode);
+    }
+
+    /**
+     * Same as {@link ConsulService#getAllCommonVariables()}, along with the consul index the variables were read at,
+     * the index changes with any change of common variables
+     */
+    public Pair<Long, Map<String, String>> getAllCommonVariablesWithIndex() {
+        return getAllCommonVariablesWithIndex(client.getReadMode());
+    }
+
+    /**
+     * @return version of the common variables written by this instance, changes with every local write
+     */
+    public long getCommonVariablesLocalVersion() {
+        return commonVariablesCache.getLocalWrites();
+    }
+
+    private Pair<Long, Map<String, String>> getAllCommonVariablesWithIndex(ConsulReadMode mode) {
+        if (mode == ConsulReadMode.CACHED) {
+            Optional<CommonVariablesSnapshot> snapshot = commonVariablesCache.getSnapshot();
+            if (snapshot.isPresent()) {
+                return Pair.of(snapshot.get().index(), snapshot.get().variables());
+            }
+        }
+
+        final String keyPrefix = this.keyPrefix + keyEngineConfigRoot + keyCommonVariablesV2;
+        try {
+            return client.waitForKVChanges(keyPrefix, true, 0, "0", mode, new CommonVariablesReader(keyPrefix));
+        } catch (KVNotFoundException kvnfe) {
+            return Pair.of(kvnfe.getIndex(), Collections.emptyMap());
+        }
+    }
+
+    /**
+     * Names of all common variables in the configured {@link ConsulReadMode}, values are not read
+     */
+    public Set<String> getAllCommonVariablesNames() {
+        return getAllCommonVariablesNames(client.getReadMode());
+    }
+
+    /**
+     * @param mode {@link ConsulReadMode#DEFAULT} for reads validating a write
+     */
+    public Set<String> getAllCommonVariablesNames(ConsulReadMode mode) {
+        if (mode == ConsulReadMode.CACHED) {
+            Optional<Map<String, String>> cached = commonVariablesCache.getVariables();
+            if (cached.isPresent()) {
+                return cached.get().keySet();
+            }
+        }
+
+        final String keyPrefix = this.keyPrefix + keyEngineConfigRoot + keyCommonVariablesV2 + "/";
+        CommonVariablesReader reader = new CommonVariablesReader(keyPrefix);
+        return client.getKeys(keyPrefix, "/", mode).stream()
+                .map(reader::getVariableName)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Always read from consul, base for check-and-set writes
+     * @return all common variables and ModifyIndex of each of them
+     */
+    public Pair<Map<String, String>, Map<String, Long>> getAllCommonVariablesWithIndexes() {
+        final String keyPrefix = this.keyPrefix + keyEngineConfigRoot + keyCommonVariablesV2;
+        Map<String, Long> modifyIndexes = new HashMap<>();
+        try {
+            Map<String, String> variables = client.waitForKVChanges(keyPrefix, true, 0, "0", ConsulReadMode.DEFAULT,
+                    new CommonVariablesReader(keyPrefix, modifyIndexes)).getRight();
+            return Pair.of(variables, modifyIndexes);
+        } catch (KVNotFoundException kvnfe) {
+            return Pair.of(Collections.emptyMap(), Collections.emptyMap());
+        }
+    }
+
+    /**
+     * Common variables created, modified or deleted after the index, based on ModifyIndex of the keys
+     * and deletions logged by {@link CommonVariablesTombstones}.
+     * All variables are returned as a full resync if the index is 0, ahead of consul (index reset),
+     * older than the tombstones log or there is no recent snapshot to compute the delta from
+     */
+    public CommonVariablesDelta getCommonVariablesDelta(long since) {
+        Optional<CommonVariablesSnapshot> confirmed = commonVariablesCache.getConfirmedSnapshot();
+        if (confirmed.isPresent()) {
+            CommonVariablesSnapshot snapshot = confirmed.get();
+            Set<String> deleted = since > 0 && since <= snapshot.index()
+                    ? tombstones.deletedBetween(since, snapshot.index())
+                    : null;
+            if (deleted == null) {
+                return new CommonVariablesDelta(snapshot.index(), true, snapshot.variables(), Collections.emptySet());
+            }
+
+            Map<String, String> changed = new HashMap<>();
+            snapshot.modifyIndexes().forEach((name, modifyIndex) -> {
+                if (modifyIndex > since) {
+                    changed.put(name, snapshot.variables().get(name));
+                }
+            });
+            // Deleted and created again is a change
+            deleted.removeAll(snapshot.variables().keySet());
+            return new CommonVariablesDelta(snapshot.index(), false, changed, deleted);
+        }
+
+        // Watcher is disabled or out of sync, deletions are unknown
+        Pair<Long, Map<String, String>> all = getAllCommonVariablesWithIndex(ConsulReadMode.DEFAULT);
+        return new CommonVariablesDelta(all.getLeft(), true, all.getRight(), Collections.emptySet());
+    }
+
+    /**
+     * Blocking query on the common variables prefix
+     * @param modifyIndexes filled with ModifyIndex of every variable
+     * @return consul index and all common variables
+     * @throws KVNotFoundException if there are no common variables, contains consul index to continue waiting from
+     */
+    public Pair<Long, Map<String, String>> waitForCommonVariablesChanges(long index, String waitTimeout,
+                                                                        Map<String, Long> modifyIndexes)
+            throws KVNotFoundException {
+        final String keyPrefix = this.keyPrefix + keyEngineConfigRoot + keyCommonVariablesV2;
+        return client.waitForKVChanges(keyPrefix, true, index, waitTimeout,
+                new CommonVariablesReader(keyPrefix, modifyIndexes));
     }
 
     public boolean commonVariablesKvExists() {
         try {
-            client.getKV(keyPrefix + keyEngineConfigRoot + keyCommonVariablesV2, true);
+            client.getKV(keyPrefix + keyEngineConfigRoot + keyCommonVariablesV2, true, ConsulReadMode.DEFAULT);
             return true;
         } catch (KVNotFoundException kvnfe) {
             return false;
@@ -104,31 +270,19 @@ public class ConsulService {
     }
 
     /**
-     * Use {@link ConsulService#getStringStringMap(String key)}
+     * Use {@link ConsulService#getStringStringMap(String key, ConsulReadMode mode)}
      */
     @Deprecated(since = "24.1")
     @NotNull
     private Map<String, String> getStringStringMapLegacy(String key) {
-        return getStringStringMap(key, this::parseCommonVariable);
-    }
-
-    @NotNull
-    private Map<String, String> getStringStringMap(String key) {
-        return getStringStringMap(key, this::parseCommonVariable);
+        return getStringStringMap(key, ConsulReadMode.DEFAULT);
     }
 
     @NotNull
-    private Map<String, String> getStringStringMap(String key, Function<KeyResponse, Pair<String, String>> responseParser) {
+    private Map<String, String> getStringStringMap(String key, ConsulReadMode mode) {
         try {
             final String keyPrefix = this.keyPrefix + keyEngineConfigRoot + key;
-            List<KeyResponse> responses =
-                    client.getKV(keyPrefix, true);
-
-            return responses.stream()
-                    .filter(keyResponse -> filterL1NonEmptyPaths(keyPrefix, keyResponse.getKey()))
-                    .map(responseParser)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toMap(Pair::getKey, nullValueRemapping()));
+            return client.waitForKVChanges(keyPrefix, true, 0, "0", mode, new CommonVariablesReader(keyPrefix)).getRight();
         } catch (KVNotFoundException kvnfe) {
             return Collections.emptyMap();
         }
@@ -139,29 +293,136 @@ public class ConsulService {
         return pair -> pair.getValue() == null ? "" : pair.getValue();
     }
 
+    /**
+     * Streams all legacy (v1) common variables of all tenants to the consumer
+     * @return number of variables read
+     */
+    public int streamLegacyCommonVariables(LegacyCommonVariablesReader.VariableConsumer consumer) {
+        final String keyPrefix = this.keyPrefix + keyEngineConfigRoot + keyCommonVariables;
+        try {
+            return client.waitForKVChanges(keyPrefix, true, 0, "0", ConsulReadMode.DEFAULT,
+                    new LegacyCommonVariablesReader(keyPrefix, consumer)).getRight();
+        } catch (KVNotFoundException kvnfe) {
+            return 0;
+        }
+    }
+
+    /**
+     * Streams legacy (v1) common variables of a single tenant to the consumer
+     * @return number of variables read
+     */
+    public int streamLegacyCommonVariables(String tenant, LegacyCommonVariablesReader.VariableConsumer consumer) {
+        final String keyPrefix = this.keyPrefix + keyEngineConfigRoot + keyCommonVariables;
+        try {
+            return client.waitForKVChanges(keyPrefix + "/" + tenant + "/", true, 0, "0", ConsulReadMode.DEFAULT,
+                    new LegacyCommonVariablesReader(keyPrefix, consumer)).getRight();
+        } catch (KVNotFoundException kvnfe) {
+            return 0;
+        }
+    }
+
     public void deleteLegacyVariablesKV() {
         client.deleteKV(keyPrefix + keyEngineConfigRoot + keyCommonVariables, true);
     }
 
     public void deleteCommonVariable(String key) {
-        client.deleteKV(buildCommonVariableKey(key), false);
+        client.deleteKVsInTransaction(List.of(buildCommonVariableKeyForTxn(key)), true);
+        commonVariablesCache.invalidate(getCommonVariablesIndex());
     }
 
     public void deleteCommonVariables(List<String> variablesNames) {
+        if (variablesNames.isEmpty()) {
+            return;
+        }
         client.deleteKVsInTransaction(variablesNames.stream()
                 .map(this::buildCommonVariableKeyForTxn)
-                .toList());
+                .toList(), true);
+        commonVariablesCache.invalidate(getCommonVariablesIndex());
     }
 
     public void updateCommonVariable(String key, String value) {
-        client.createOrUpdateKV(buildCommonVariableKey(key), value);
+        String variableKey = buildCommonVariableKeyForTxn(key);
+        Map<String, String> replacedChunks = getReplacedChunks(Set.of(variableKey));
+        Map<String, CommonVariableCodec.Encoded> encoded = encodeValues(Map.of(variableKey, value));
+        commonVariablesCache.invalidate(writeEncoded(encoded,
+                () -> maxIndex(client.createOrUpdateKVsInTransaction(encodedValues(encoded), replacedChunks))));
     }
 
     public void updateCommonVariables(Map<String, String> variables) {
-        client.createOrUpdateKVsInTransaction(variables.entrySet().stream()
+        if (variables.isEmpty()) {
+            return;
+        }
+        Map<String, CommonVariableCodec.Encoded> encoded = encodeValues(variables.entrySet().stream()
                 .collect(Collectors.toMap(
                         entry -> buildCommonVariableKeyForTxn(entry.getKey()),
                         Map.Entry::getValue)));
+        Map<String, String> replacedChunks = getReplacedChunks(encoded.keySet());
+        commonVariablesCache.invalidate(writeEncoded(encoded,
+                () -> maxIndex(client.createOrUpdateKVsInTransaction(encodedValues(encoded), replacedChunks))));
+    }
+
+    /**
+     * Check-and-set write of a single variable
+     * @param expectedIndex ModifyIndex the variable is expected to have, 0 - the variable must not exist
+     * @return new ModifyIndex of the variable
+     * @throws TxnConflictException if the variable was modified concurrently
+     */
+    public long updateCommonVariable(String key, String value, long expectedIndex) {
+        String variableKey = buildCommonVariableKeyForTxn(key);
+        // The write fails unless the header read is the one at the expected index
+        Map<String, String> replacedChunks = expectedIndex > 0
+                ? getReplacedChunks(Set.of(variableKey))
+                : Collections.emptyMap();
+        Map<String, CommonVariableCodec.Encoded> encoded = encodeValues(Map.of(variableKey, value));
+        byte[] encodedValue = encoded.get(variableKey).value();
+        // Writes replacing chunks are rare, they are not coalesced
+        long writeIndex = writeEncoded(encoded, () -> replacedChunks.isEmpty()
+                ? writeCoalescer.casKV(variableKey, encodedValue, expectedIndex)
+                : client.casKV(variableKey, encodedValue, expectedIndex, replacedChunks.get(variableKey)));
+        commonVariablesCache.invalidate(writeIndex);
+        return writeIndex;
+    }
+
+    /**
+     * Check-and-set write of several variables
+     * @param expectedIndexes ModifyIndex by variable name, absent variables must not exist
+     * @throws TxnConflictException if any of the variables was modified concurrently
+     */
+    public void updateCommonVariables(Map<String, String> variables, Map<String, Long> expectedIndexes) {
+        if (variables.isEmpty()) {
+            return;
+        }
+        Map<String, String> kvs = new HashMap<>();
+        Map<String, Long> indexes = new HashMap<>();
+        variables.forEach((name, value) -> {
+            String key = buildCommonVariableKeyForTxn(name);
+            kvs.put(key, value);
+            indexes.put(key, expectedIndexes.getOrDefault(name, 0L));
+        });
+        Map<String, String> replacedChunks = getReplacedChunks(indexes.entrySet().stream()
+                .filter(entry -> entry.getValue() > 0)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet()));
+        Map<String, CommonVariableCodec.Encoded> encoded = encodeValues(kvs);
+        commonVariablesCache.invalidate(writeEncoded(encoded,
+                () -> maxIndex(client.casKVsInTransaction(encodedValues(encoded), indexes, replacedChunks))));
+    }
+
+    /**
+     * Deletes return no ModifyIndex, the index of the prefix read from the leader covers them
+     * @return 0 if the index can't be read
+     */
+    private long getCommonVariablesIndex() {
+        try {
+            return client.getIndex(keyPrefix + keyEngineConfigRoot + keyCommonVariablesV2);
+        } catch (RuntimeException e) {
+            log.warn("Failed to read common variables index after a write: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    private static long maxIndex(Map<String, Long> modifyIndexes) {
+        return modifyIndexes.values().stream().mapToLong(Long::longValue).max().orElse(0);
     }
 
     @NotNull
@@ -180,11 +441,125 @@ public class ConsulService {
      */
     private Pair<String, String> parseCommonVariable(KVResponse k) {
         String[] split = k.getKey().split("/");
-        return split.length > 0 ? Pair.of(split[split.length - 1], k.getDecodedValue()) : null;
+        return split.length > 0
+                ? Pair.of(split[split.length - 1], decodeValue(k.getKey(), k.getDecodedBytes(), ConsulReadMode.DEFAULT))
+                : null;
+    }
+
+    /**
+     * @param variableKey consul key of the variable, with or without a leading slash
+     */
+    private String decodeValue(String variableKey, @Nullable byte[] value, ConsulReadMode mode) {
+        CommonVariableCodec.ChunkedHeader header = CommonVariableCodec.getChunkedHeader(value);
+        if (header == null) {
+            return CommonVariableCodec.decode(value, path -> null);
+        }
+
+        String chunksPrefix = (variableKey.startsWith("/") ? "" : "/") + variableKey + "/" + header.generation() + "/";
+        Map<String, byte[]> chunks = new HashMap<>();
+        try {
+            for (KeyResponse chunk : client.getKV(chunksPrefix, true, mode)) {
+                String number = chunk.getKey().substring(chunk.getKey().lastIndexOf('/') + 1);
+                if (StringUtils.isNumeric(number)) {
+                    chunks.put(CommonVariableCodec.chunkPath(header.generation(), Integer.parseInt(number)),
+                            chunk.getDecodedBytes());
+                }
+            }
+        } catch (KVNotFoundException ignored) {
+            // Reported by the codec as a missing chunk
+        }
+        return CommonVariableCodec.decode(value, chunks::get);
     }
 
-    private static boolean filterL1NonEmptyPaths(String pathPrefix, String path) {
-        String[] split = path.substring(pathPrefix.length()).split("/");
-        return split.length == 1 && StringUtils.isNotEmpty(split[0]);
+    /**
+     * Chunks of large values are written right away under a new generation, invisible to readers
+     * until the variable keys referencing them are written
+     * @param values value by consul key of the variable without a leading slash
+     */
+    private Map<String, CommonVariableCodec.Encoded> encodeValues(Map<String, String> values) {
+        Map<String, CommonVariableCodec.Encoded> encoded = new HashMap<>();
+        Map<String, byte[]> chunks = new HashMap<>();
+        values.forEach((key, value) -> {
+            CommonVariableCodec.Encoded encodedValue = codec.encode(value);
+            encoded.put(key, encodedValue);
+            for (int i = 0; i < encodedValue.chunks().size(); i++) {
+                chunks.put(key + "/" + CommonVariableCodec.chunkPath(encodedValue.generation(), i),
+                        encodedValue.chunks().get(i));
+            }
+        });
+        if (!chunks.isEmpty()) {
+            client.createOrUpdateKVsInTransaction(chunks);
+        }
+        return encoded;
+    }
+
+    private static Map<String, byte[]> encodedValues(Map<String, CommonVariableCodec.Encoded> encoded) {
+        return encoded.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().value()));
+    }
+
+    /**
+     * Writes variable keys, if the write failed, removes the chunks written for it
+     */
+    private <T> T writeEncoded(Map<String, CommonVariableCodec.Encoded> encoded, Supplier<T> write) {
+        try {
+            return write.get();
+        } catch (RuntimeException e) {
+            encoded.forEach((key, value) -> {
+                if (value.isChunked()) {
+                    removeChunks(key + "/" + value.generation() + "/");
+                }
+            });
+            throw e;
+        }
+    }
+
+    /**
+     * Chunks referenced by the current values of the variables, to be removed in the same txn as the values
+     * replacing them. Only the generation in the header is removed, chunks of concurrent writes are left intact.
+     * While the codec is disabled nothing is read, chunks of replaced values stay until the variables are deleted.
+     * @param variableKeys consul keys of the variables without a leading slash
+     * @return chunks prefix by the variable key
+     */
+    private Map<String, String> getReplacedChunks(Set<String> variableKeys) {
+        if (!codec.isEnabled() || variableKeys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        try {
+            Collection<String> chunkedKeys = variableKeys;
+            if (variableKeys.size() > 1) {
+                // Only variables with sub-keys can be chunked, they are listed as folders
+                String variablesPrefix = keyPrefix + keyEngineConfigRoot + keyCommonVariablesV2 + "/";
+                chunkedKeys = client.getKeys(variablesPrefix, "/", ConsulReadMode.DEFAULT).stream()
+                        .filter(key -> key.endsWith("/"))
+                        .map(key -> StringUtils.removeEnd(key, "/"))
+                        .filter(variableKeys::contains)
+                        .toList();
+            }
+
+            Map<String, String> replacedChunks = new HashMap<>();
+            for (String key : chunkedKeys) {
+                CommonVariableCodec.ChunkedHeader header =
+                        CommonVariableCodec.getChunkedHeader(client.getRawValue("/" + key, ConsulReadMode.DEFAULT));
+                if (header != null) {
+                    replacedChunks.put(key, key + "/" + header.generation() + "/");
+                }
+            }
+            return replacedChunks;
+        } catch (RuntimeException e) {
+            log.warn("Failed to read chunks of replaced common variables, they are left in consul: {}", e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * @param chunksPrefix {@code <variable key>/<generation>/}, without a leading slash
+     */
+    private void removeChunks(String chunksPrefix) {
+        try {
+            client.deleteKV("/" + chunksPrefix, true);
+        } catch (RuntimeException e) {
+            log.warn("Failed to remove unused chunks {}: {}", chunksPrefix, e.getMessage());
+        }
     }
 }
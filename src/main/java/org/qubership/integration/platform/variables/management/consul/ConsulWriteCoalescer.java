@@ -0,0 +1,196 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.qubership.integration.platform.variables.management.model.consul.txn.request.TxnRequest;
+import org.qubership.integration.platform.variables.management.model.consul.txn.request.TxnVerb;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Group commit of single key check-and-set writes. Writes arriving within the window are sent as one txn,
+ * each caller gets the ModifyIndex of its own key. A failed txn applies nothing, its writes are then
+ * repeated one by one by their callers, so each caller gets its own result or error.
+ */
+@Slf4j
+@Component
+public class ConsulWriteCoalescer {
+    private static final String METRICS_PREFIX = "qip.consul.write.coalescing";
+
+    private record PendingWrite(String key, byte[] value, long index, long size, CompletableFuture<Long> result) {
+    }
+
+    /**
+     * Signals the caller to repeat its write alone
+     */
+    private static final class BatchFailedException extends RuntimeException {
+        private BatchFailedException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final BatchFailedException BATCH_FAILED = new BatchFailedException();
+
+    private final ConsulClient client;
+    private final boolean enabled;
+    private final long window;
+    private final int maxBatch;
+    private final long maxBytes;
+    private final ScheduledExecutorService flusher;
+    private final DistributionSummary batchSizes;
+    private final Counter fallbacks;
+
+    // Guarded by this
+    private final List<PendingWrite> pending = new ArrayList<>();
+    private boolean flushScheduled;
+
+    @Autowired
+    public ConsulWriteCoalescer(ConsulClient client,
+                                MeterRegistry meterRegistry,
+                                @Value("${consul.write-coalescing.enabled}") boolean enabled,
+                                @Value("${consul.write-coalescing.window}") Duration window,
+                                @Value("${consul.write-coalescing.max-batch}") int maxBatch,
+                                @Value("${consul.txn.max-bytes}") long txnMaxBytes) {
+        this.client = client;
+        this.enabled = enabled;
+        this.window = window.toMillis();
+        this.maxBatch = Math.min(maxBatch, ConsulClient.MAX_TXN_SIZE);
+        // Whole batch must be planned as a single txn, so it is applied atomically
+        this.maxBytes = txnMaxBytes - TxnBatchPlanner.REQUEST_OVERHEAD_BYTES;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+                .namingPattern("consul-write-coalescer-%d")
+                .daemon(true)
+                .build());
+        this.batchSizes = DistributionSummary.builder(METRICS_PREFIX + ".batch.size")
+                .description("Writes sent in one coalesced consul txn")
+                .register(meterRegistry);
+        this.fallbacks = Counter.builder(METRICS_PREFIX + ".fallbacks")
+                .description("Coalesced txns failed and repeated as individual writes")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+    }
+
+    /**
+     * Same as {@link ConsulClient#casKV(String, byte[], long)}, blocks until the write is sent with other ones
+     */
+    public long casKV(String key, byte[] value, long index) throws ConsulException {
+        if (!enabled) {
+            return client.casKV(key, value, index);
+        }
+        long size = TxnBatchPlanner.estimateSize(new TxnRequest(ConsulClient.binaryKVRequest(TxnVerb.CAS, key, value, index)));
+        if (size > maxBytes / 2) {
+            // Large values gain nothing from batching and would crowd out the others
+            return client.casKV(key, value, index);
+        }
+
+        PendingWrite write = new PendingWrite(key, value, index, size, new CompletableFuture<>());
+        enqueue(write);
+        try {
+            return write.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof BatchFailedException) {
+                return client.casKV(key, value, index);
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private synchronized void enqueue(PendingWrite write) {
+        pending.add(write);
+        if (pending.size() >= maxBatch) {
+            flusher.execute(this::flush);
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            flusher.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        List<PendingWrite> batch;
+        while (!(batch = takeBatch()).isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private synchronized List<PendingWrite> takeBatch() {
+        List<PendingWrite> batch = new ArrayList<>();
+        Set<String> keys = new HashSet<>();
+        long bytes = 0;
+        Iterator<PendingWrite> iterator = pending.iterator();
+        while (iterator.hasNext() && batch.size() < maxBatch) {
+            PendingWrite write = iterator.next();
+            // Writes of the same key depend on each other, the later one goes to the next txn
+            if (keys.contains(write.key()) || bytes + write.size() > maxBytes) {
+                continue;
+            }
+            keys.add(write.key());
+            bytes += write.size();
+            batch.add(write);
+            iterator.remove();
+        }
+        if (pending.isEmpty()) {
+            flushScheduled = false;
+        }
+        return batch;
+    }
+
+    private void send(List<PendingWrite> batch) {
+        batchSizes.record(batch.size());
+        if (batch.size() == 1) {
+            PendingWrite write = batch.get(0);
+            try {
+                write.result().complete(client.casKV(write.key(), write.value(), write.index()));
+            } catch (RuntimeException e) {
+                write.result().completeExceptionally(e);
+            }
+            return;
+        }
+
+        Map<String, byte[]> values = new HashMap<>();
+        Map<String, Long> indexes = new HashMap<>();
+        for (PendingWrite write : batch) {
+            values.put(write.key(), write.value());
+            indexes.put(write.key(), write.index());
+        }
+        try {
+            Map<String, Long> modifyIndexes = client.casKVsInTransaction(values, indexes);
+            batch.forEach(write -> write.result().complete(modifyIndexes.getOrDefault(write.key(), 0L)));
+        } catch (RuntimeException e) {
+            log.debug("Coalesced write of {} keys failed, writing individually: {}", batch.size(), e.getMessage());
+            fallbacks.increment();
+            batch.forEach(write -> write.result().completeExceptionally(BATCH_FAILED));
+        }
+    }
+}
@@ -16,11 +16,25 @@
 
 package org.qubership.integration.platform.variables.management.consul;
 
+import lombok.Getter;
+
+@Getter
 public class KVNotFoundException extends ConsulException {
+    /**
+     * X-Consul-Index of the 404 response, 0 if unknown.
+     * Allows blocking queries to continue waiting on a key that does not exist yet.
+     */
+    private long index;
+
     public KVNotFoundException() {
     }
 
     public KVNotFoundException(String message) {
         super(message);
     }
+
+    public KVNotFoundException(String message, long index) {
+        super(message);
+        this.index = index;
+    }
 }
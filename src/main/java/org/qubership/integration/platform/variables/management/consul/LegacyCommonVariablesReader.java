@@ -0,0 +1,83 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Streaming reader of the legacy (v1) common variables tree {@code <prefix>/<tenant>/<variable>}.
+ * Variables are passed to the consumer as they are parsed, nothing is accumulated.
+ */
+public class LegacyCommonVariablesReader implements KVResponseReader<Integer> {
+    private static final String KEY_FIELD = "Key";
+    private static final String VALUE_FIELD = "Value";
+
+    @FunctionalInterface
+    public interface VariableConsumer {
+        void accept(String tenant, String name, String value);
+    }
+
+    // Consul keys have no leading slash
+    private final String keyPrefix;
+    private final VariableConsumer consumer;
+
+    public LegacyCommonVariablesReader(String keyPrefix, VariableConsumer consumer) {
+        String prefix = keyPrefix.startsWith("/") ? keyPrefix.substring(1) : keyPrefix;
+        this.keyPrefix = prefix.endsWith("/") ? prefix : prefix + "/";
+        this.consumer = consumer;
+    }
+
+    /**
+     * @return number of variables passed to the consumer
+     */
+    @Override
+    public Integer read(JsonParser parser) throws IOException {
+        int count = 0;
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            return count;
+        }
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String key = null;
+            byte[] value = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if (KEY_FIELD.equals(field)) {
+                    key = parser.getText();
+                } else if (VALUE_FIELD.equals(field) && token != JsonToken.VALUE_NULL) {
+                    value = parser.getBinaryValue(Base64Variants.MIME_NO_LINEFEEDS);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            String[] path = key != null && key.startsWith(keyPrefix)
+                    ? key.substring(keyPrefix.length()).split("/")
+                    : null;
+            if (path != null && path.length == 2 && !path[0].isEmpty() && !path[1].isEmpty()) {
+                consumer.accept(path[0], path[1], CommonVariableCodec.decode(value, chunk -> null));
+                count++;
+            }
+        }
+        return count;
+    }
+}
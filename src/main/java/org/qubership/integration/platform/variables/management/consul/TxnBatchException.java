@@ -0,0 +1,64 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Some chunks of a batched txn request failed. Chunks are separate consul transactions,
+ * so chunks that are not listed in failures were applied.
+ */
+@Getter
+public class TxnBatchException extends ConsulException {
+    private final int chunksCount;
+    private final int skippedChunksCount;
+    private final List<ChunkFailure> failures;
+
+    public TxnBatchException(int chunksCount, int skippedChunksCount, List<ChunkFailure> failures) {
+        super(buildMessage(chunksCount, skippedChunksCount, failures), failures.isEmpty() ? null : failures.get(0).cause());
+        this.chunksCount = chunksCount;
+        this.skippedChunksCount = skippedChunksCount;
+        this.failures = Collections.unmodifiableList(failures);
+        failures.stream().skip(1).forEach(failure -> addSuppressed(failure.cause()));
+    }
+
+    public boolean isConflict() {
+        return !failures.isEmpty() && failures.stream().allMatch(failure -> failure.cause() instanceof TxnConflictException);
+    }
+
+    private static String buildMessage(int chunksCount, int skippedChunksCount, List<ChunkFailure> failures) {
+        return "Consul txn request failed for " + failures.size() + " of " + chunksCount + " chunks"
+                + (skippedChunksCount > 0 ? " (" + skippedChunksCount + " chunks not sent)" : "") + ": "
+                + failures.stream().map(ChunkFailure::toString).collect(Collectors.joining("; "));
+    }
+
+    /**
+     * @param chunk     chunk number, starting from 0
+     * @param fromOp    index of the first operation of the chunk in the whole request
+     * @param toOp      index of the last operation of the chunk in the whole request, inclusive
+     */
+    public record ChunkFailure(int chunk, int fromOp, int toOp, Throwable cause) {
+        @Override
+        public String toString() {
+            return "chunk " + chunk + " (operations " + fromOp + "-" + toOp + "): " + cause.getMessage();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import org.qubership.integration.platform.variables.management.model.consul.txn.request.TxnKVRequest;
+import org.qubership.integration.platform.variables.management.model.consul.txn.request.TxnRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits txn operations into batches, each fitting both consul txn limits:
+ * number of operations and size of the request body
+ */
+public class TxnBatchPlanner {
+    /**
+     * Estimated size of a single operation JSON envelope ({"KV":{"Verb":..,"Key":..,"Value":..}}) with indentation
+     */
+    static final int OPERATION_OVERHEAD_BYTES = 128;
+    static final int REQUEST_OVERHEAD_BYTES = 4;
+
+    private final int maxOperations;
+    private final long maxBytes;
+
+    public TxnBatchPlanner(int maxOperations, long maxBytes) {
+        this.maxOperations = maxOperations;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @throws TxnPayloadTooLargeException if any single operation doesn't fit the size limit, nothing should be sent then
+     */
+    public List<Batch> plan(List<TxnRequest> operations) throws TxnPayloadTooLargeException {
+        return planGroups(operations.stream().map(List::of).toList());
+    }
+
+    /**
+     * Operations of a group are never split between batches, e.g. a write and the removal of the data it replaces
+     * @return batches of the groups operations in order, offsets are counted in operations
+     * @throws TxnPayloadTooLargeException if any single group doesn't fit the limits, nothing should be sent then
+     */
+    public List<Batch> planGroups(List<List<TxnRequest>> groups) throws TxnPayloadTooLargeException {
+        List<TxnRequest> operations = new ArrayList<>();
+        long[] sizes = new long[groups.size()];
+        List<String> oversizedKeys = new ArrayList<>();
+        for (int i = 0; i < groups.size(); i++) {
+            List<TxnRequest> group = groups.get(i);
+            for (TxnRequest operation : group) {
+                sizes[i] += estimateSize(operation);
+            }
+            if (sizes[i] + REQUEST_OVERHEAD_BYTES > maxBytes || group.size() > maxOperations) {
+                oversizedKeys.add(group.get(0).getKv().getKey());
+            }
+            operations.addAll(group);
+        }
+        if (!oversizedKeys.isEmpty()) {
+            throw new TxnPayloadTooLargeException(maxBytes, oversizedKeys);
+        }
+
+        List<Batch> batches = new ArrayList<>();
+        int from = 0;
+        int count = 0;
+        long bytes = REQUEST_OVERHEAD_BYTES;
+        for (int i = 0; i < groups.size(); i++) {
+            int groupSize = groups.get(i).size();
+            if (count + groupSize > maxOperations || bytes + sizes[i] > maxBytes) {
+                batches.add(new Batch(operations.subList(from, from + count), from, bytes));
+                from += count;
+                count = 0;
+                bytes = REQUEST_OVERHEAD_BYTES;
+            }
+            count += groupSize;
+            bytes += sizes[i];
+        }
+        if (count > 0) {
+            batches.add(new Batch(operations.subList(from, from + count), from, bytes));
+        }
+        return batches;
+    }
+
+    static long estimateSize(TxnRequest operation) {
+        TxnKVRequest kv = operation.getKv();
+        long size = OPERATION_OVERHEAD_BYTES;
+        if (kv.getKey() != null) {
+            size += kv.getKey().getBytes(StandardCharsets.UTF_8).length;
+        }
+        // value is already base64 encoded
+        if (kv.getValue() != null) {
+            size += kv.getValue().length();
+        }
+        return size;
+    }
+
+    /**
+     * @param operations  operations of a single txn request
+     * @param offset      index of the first operation in the planned list
+     * @param bytes       estimated request body size
+     */
+    public record Batch(List<TxnRequest> operations, int offset, long bytes) {
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Some txn operations can't be sent to consul because a single operation exceeds the txn request size limit
+ */
+@Getter
+public class TxnPayloadTooLargeException extends ConsulException {
+    private final List<String> keys;
+
+    public TxnPayloadTooLargeException(long maxBytes, List<String> keys) {
+        super("Consul txn request size limit of " + maxBytes + " bytes is exceeded by value(s) of key(s): "
+                + keys.stream().collect(Collectors.joining(", ")));
+        this.keys = Collections.unmodifiableList(keys);
+    }
+}
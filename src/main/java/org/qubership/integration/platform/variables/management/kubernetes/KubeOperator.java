@@ -19,7 +19,9 @@ package org.qubership.integration.platform.variables.management.kubernetes;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.reflect.TypeToken;
 import io.kubernetes.client.custom.V1Patch;
+import io.kubernetes.client.openapi.ApiCallback;
 import io.kubernetes.client.openapi.ApiClient;
 import io.kubernetes.client.openapi.ApiException;
 import io.kubernetes.client.openapi.apis.AppsV1Api;
@@ -28,6 +30,7 @@ import io.kubernetes.client.openapi.apis.CustomObjectsApi;
 import io.kubernetes.client.openapi.models.V1ObjectMeta;
 import io.kubernetes.client.openapi.models.V1Secret;
 import io.kubernetes.client.openapi.models.V1SecretList;
+import io.kubernetes.client.util.Watch;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.Call;
 import org.apache.commons.lang3.tuple.Pair;
@@ -35,9 +38,13 @@ import org.qubership.integration.platform.variables.management.model.json.JsonPa
 import org.qubership.integration.platform.variables.management.model.json.PatchOperation;
 import org.springframework.lang.Nullable;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -48,11 +55,20 @@ public class KubeOperator {
 
     private static final String METADATA_NAME_FIELD = "metadata.name";
     private static final String DEFAULT_ERR_MESSAGE = "Invalid k8s cluster parameters or API error. ";
+    private static final int WATCH_TIMEOUT_MARGIN_SECONDS = 30;
 
     private final ObjectMapper objectMapper;
     private final CoreV1Api coreApi;
     private final AppsV1Api appsApi;
     private final CustomObjectsApi customObjectsApi;
+    // Same client without read timeout, watch responses are idle until a change happens
+    private final CoreV1Api watchApi;
+    private final List<Consumer<V1Secret>> secretWriteListeners = new CopyOnWriteArrayList<>();
+    // Key sets of the secrets by name, reused while the resource version is the same
+    private final ConcurrentMap<String, SecretKeys> secretKeysCache = new ConcurrentHashMap<>();
+
+    private record SecretKeys(@Nullable String resourceVersion, Set<String> keys) {
+    }
 
     private final String namespace;
 
@@ -60,6 +76,7 @@ public class KubeOperator {
         coreApi = new CoreV1Api();
         appsApi = new AppsV1Api();
         customObjectsApi = new CustomObjectsApi();
+        watchApi = new CoreV1Api();
         namespace = null;
         this.objectMapper = new ObjectMapper();
         this.objectMapper.setSerializationInclusion(JsonInclude.Include.NON_EMPTY);
@@ -78,6 +95,13 @@ public class KubeOperator {
         customObjectsApi = new CustomObjectsApi();
         customObjectsApi.setApiClient(client);
 
+        ApiClient watchClient = new ApiClient();
+        watchClient.setHttpClient(client.getHttpClient().newBuilder()
+                .readTimeout(Duration.ZERO)
+                .build());
+        watchClient.setBasePath(client.getBasePath());
+        watchApi = new CoreV1Api(watchClient);
+
         this.namespace = namespace;
         this.objectMapper = new ObjectMapper();
         this.objectMapper.setSerializationInclusion(JsonInclude.Include.NON_EMPTY);
@@ -128,6 +152,112 @@ public class KubeOperator {
         return secrets;
     }
 
+    /**
+     * @param listener notified with the resulting state of every secret created or changed via this operator
+     */
+    public void addSecretWriteListener(Consumer<V1Secret> listener) {
+        secretWriteListeners.add(listener);
+    }
+
+    /**
+     * @return secrets with the label, along with the resource version of the list to start a watch from
+     */
+    public V1SecretList listSecretsWithLabel(Pair<String, String> label) throws KubeApiException {
+        try {
+            return coreApi.listNamespacedSecret(namespace, null, null, null, null,
+                    label.getKey() + "=" + label.getValue(), null, null, null, null, null, null);
+        } catch (ApiException e) {
+            log.error(DEFAULT_ERR_MESSAGE + e.getResponseBody());
+            throw new KubeApiException(DEFAULT_ERR_MESSAGE + e.getResponseBody(), e);
+        } catch (Exception e) {
+            log.error(DEFAULT_ERR_MESSAGE + e.getMessage());
+            throw new KubeApiException(DEFAULT_ERR_MESSAGE + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Watch must be closed by the caller, it ends by itself after the timeout
+     * @param resourceVersion changes after this version are watched
+     * @throws ApiException with code 410 if the resource version is too old, the secrets must be listed again
+     */
+    public Watch<V1Secret> watchSecretsWithLabel(Pair<String, String> label, String resourceVersion, int timeoutSeconds)
+            throws ApiException {
+        Call call = watchApi.listNamespacedSecretCall(namespace, null, true, null, null,
+                label.getKey() + "=" + label.getValue(), null, resourceVersion, null, null, timeoutSeconds, true, null);
+        // Breaks a silently dropped connection, the watch client has no read timeout
+        call.timeout().timeout(timeoutSeconds + WATCH_TIMEOUT_MARGIN_SECONDS, TimeUnit.SECONDS);
+        return Watch.createWatch(watchApi.getApiClient(), call, new TypeToken<Watch.Response<V1Secret>>() {
+        }.getType());
+    }
+
+    /**
+     * Same as {@link KubeOperator#getAllSecretsWithLabel(Pair)}, but the values are never converted to strings
+     * @return unmodifiable key sets of the secrets by name
+     */
+    public Map<String, Set<String>> getAllSecretsKeysWithLabel(Pair<String, String> label) {
+        Map<String, Set<String>> secrets = new HashMap<>();
+
+        try {
+            V1SecretList secretList = coreApi.listNamespacedSecret(namespace, null, null, null, null,
+                    label.getKey() + "=" + label.getValue(), null, null, null, null, null, null);
+            for (V1Secret secret : secretList.getItems()) {
+                if (secret.getMetadata() != null) {
+                    secrets.put(secret.getMetadata().getName(), getSecretKeys(secret));
+                }
+            }
+            secretKeysCache.keySet().retainAll(secrets.keySet());
+        } catch (ApiException e) {
+            if (e.getCode() != 404) {
+                log.error(DEFAULT_ERR_MESSAGE + e.getResponseBody());
+                throw new KubeApiException(DEFAULT_ERR_MESSAGE + e.getResponseBody(), e);
+            }
+        } catch (Exception e) {
+            log.error(DEFAULT_ERR_MESSAGE + e.getMessage());
+            throw new KubeApiException(DEFAULT_ERR_MESSAGE + e.getMessage(), e);
+        }
+
+        return secrets;
+    }
+
+    /**
+     * Same as {@link KubeOperator#getSecretByName(String, boolean)}, but the values are never converted to strings
+     * @return unmodifiable key set of the secret, empty if the secret does not exist and failIfNotExist is false
+     */
+    public Set<String> getSecretKeysByName(String name, boolean failIfNotExist) throws KubeApiException {
+        try {
+            return getSecretKeys(coreApi.readNamespacedSecret(name, namespace, null));
+        } catch (ApiException e) {
+            if (failIfNotExist || e.getCode() != 404) {
+                if (e.getCode() == 404) {
+                    throw new KubeApiNotFoundException("Kube secret not found", e);
+                }
+
+                log.error(DEFAULT_ERR_MESSAGE + e.getResponseBody());
+                throw new KubeApiException(DEFAULT_ERR_MESSAGE + e.getResponseBody(), e);
+            }
+            secretKeysCache.remove(name);
+        } catch (Exception e) {
+            log.error(DEFAULT_ERR_MESSAGE + e.getMessage());
+            throw new KubeApiException(DEFAULT_ERR_MESSAGE + e.getMessage(), e);
+        }
+        return Collections.emptySet();
+    }
+
+    private Set<String> getSecretKeys(V1Secret secret) {
+        V1ObjectMeta metadata = Objects.requireNonNull(secret.getMetadata());
+        String resourceVersion = metadata.getResourceVersion();
+        SecretKeys cached = secretKeysCache.get(metadata.getName());
+        if (cached != null && resourceVersion != null && resourceVersion.equals(cached.resourceVersion())) {
+            return cached.keys();
+        }
+
+        Set<String> keys = secret.getData() == null
+                ? Collections.emptySet()
+                : Collections.unmodifiableSet(new HashSet<>(secret.getData().keySet()));
+        secretKeysCache.put(metadata.getName(), new SecretKeys(resourceVersion, keys));
+        return keys;
+    }
+
     @Nullable
     public V1Secret getSecretObjectByName(String name) {
         try {
@@ -206,7 +336,7 @@ public class KubeOperator {
             secret.setMetadata(metadata);
             secret.setData(dataByte);
 
-            coreApi.createNamespacedSecret(namespace, secret, null, null, null, null);
+            notifySecretWritten(coreApi.createNamespacedSecret(namespace, secret, null, null, null, null));
         } catch (ApiException e) {
             if (e.getCode() == 409) {
                 throw new SecretAlreadyExists("Secret with name " + name + " already exists");
@@ -222,7 +352,7 @@ public class KubeOperator {
 
     public void patchSecret(String secretName, JsonPatch patch) {
         try {
-            coreApi.patchNamespacedSecret(
+            V1Secret secret = coreApi.patchNamespacedSecret(
                     secretName,
                     namespace,
                     new V1Patch(objectMapper.writeValueAsString(Collections.singletonList(patch))),
@@ -232,6 +362,7 @@ public class KubeOperator {
                     null,
                     null
             );
+            notifySecretWritten(secret);
         } catch (JsonProcessingException e) {
             log.error("Unable to serialize secret patch request", e);
             throw new KubeApiException("Unable to serialize secret patch request", e);
@@ -242,6 +373,21 @@ public class KubeOperator {
     }
 
     public ConcurrentMap<String, String> addSecretData(String secretName, Map<String, String> data, boolean init) {
+        return updateSecretData(secretName, getAddDataPatches(data, init));
+    }
+
+    public ConcurrentMap<String, String> updateSecretData(String secretName, Map<String, String> data) {
+        return updateSecretData(secretName, getReplaceDataPatches(data));
+    }
+
+    public ConcurrentMap<String, String> removeSecretData(String secretName, Set<String> keys) {
+        return updateSecretData(secretName, getRemoveDataPatches(keys));
+    }
+
+    /**
+     * @param init whether the secret has no data yet
+     */
+    public static List<JsonPatch> getAddDataPatches(Map<String, String> data, boolean init) {
         List<JsonPatch> patches = new ArrayList<>();
         if (init) {
             patches.add(new JsonPatch(PatchOperation.ADD, SECRET_DATA_PATH, Collections.emptyMap()));
@@ -250,28 +396,23 @@ public class KubeOperator {
         for (Map.Entry<String, String> entry : data.entrySet()) {
             patches.add(new JsonPatch(PatchOperation.ADD, getDataKeyPath(entry.getKey()), entry.getValue().getBytes()));
         }
-
-        return updateSecretData(secretName, patches);
+        return patches;
     }
 
-    public ConcurrentMap<String, String> updateSecretData(String secretName, Map<String, String> data) {
-        List<JsonPatch> patches = data.entrySet().stream()
+    public static List<JsonPatch> getReplaceDataPatches(Map<String, String> data) {
+        return data.entrySet().stream()
                 .map(dataEntry -> new JsonPatch(PatchOperation.REPLACE, getDataKeyPath(dataEntry.getKey()), dataEntry.getValue().getBytes()))
                 .toList();
-        return updateSecretData(secretName, patches);
     }
 
-    public ConcurrentMap<String, String> removeSecretData(String secretName, Set<String> keys) {
-        List<JsonPatch> patches = keys.stream()
+    public static List<JsonPatch> getRemoveDataPatches(Set<String> keys) {
+        return keys.stream()
                 .map(key -> new JsonPatch(PatchOperation.REMOVE, getDataKeyPath(key), null))
                 .toList();
-        return updateSecretData(secretName, patches);
     }
 
     public Call removeSecretDataAsync(String secretName, Set<String> keys, SecretUpdateCallback callback) {
-        List<JsonPatch> patches = keys.stream()
-                .map(key -> new JsonPatch(PatchOperation.REMOVE, getDataKeyPath(key), null))
-                .toList();
+        List<JsonPatch> patches = getRemoveDataPatches(keys);
 
         try {
             return coreApi.patchNamespacedSecretAsync(
@@ -283,7 +424,28 @@ public class KubeOperator {
                     null,
                     null,
                     null,
-                    callback
+                    new ApiCallback<V1Secret>() {
+                        @Override
+                        public void onFailure(ApiException e, int statusCode, Map<String, List<String>> responseHeaders) {
+                            callback.onFailure(e, statusCode, responseHeaders);
+                        }
+
+                        @Override
+                        public void onSuccess(V1Secret secret, int statusCode, Map<String, List<String>> responseHeaders) {
+                            notifySecretWritten(secret);
+                            callback.onSuccess(secret, statusCode, responseHeaders);
+                        }
+
+                        @Override
+                        public void onUploadProgress(long bytesWritten, long contentLength, boolean done) {
+                            callback.onUploadProgress(bytesWritten, contentLength, done);
+                        }
+
+                        @Override
+                        public void onDownloadProgress(long bytesRead, long contentLength, boolean done) {
+                            callback.onDownloadProgress(bytesRead, contentLength, done);
+                        }
+                    }
             );
         } catch (JsonProcessingException e) {
             log.error("Unable to serialize secret patch request", e);
@@ -311,12 +473,12 @@ public class KubeOperator {
             secret.setData(byteData);
 
             if (failIfExists) {
-                coreApi.createNamespacedSecret(namespace, secret, null, null, null, null);
+                notifySecretWritten(coreApi.createNamespacedSecret(namespace, secret, null, null, null, null));
             } else {
                 if (secretExists(name)) {
-                    coreApi.replaceNamespacedSecret(name, namespace, secret, null, null, null, null);
+                    notifySecretWritten(coreApi.replaceNamespacedSecret(name, namespace, secret, null, null, null, null));
                 } else {
-                    coreApi.createNamespacedSecret(namespace, secret, null, null, null, null);
+                    notifySecretWritten(coreApi.createNamespacedSecret(namespace, secret, null, null, null, null));
                 }
             }
         } catch (ApiException e) {
@@ -331,7 +493,11 @@ public class KubeOperator {
         }
     }
 
-    private ConcurrentMap<String, String> updateSecretData(String secretName, List<JsonPatch> patches) {
+    /**
+     * Applies all the patches in a single request, they are applied atomically and in order
+     * @return data of the secret after the patch
+     */
+    public ConcurrentMap<String, String> updateSecretData(String secretName, List<JsonPatch> patches) {
         ConcurrentMap<String, String> secretMap = new ConcurrentHashMap<>();
 
         try {
@@ -345,6 +511,7 @@ public class KubeOperator {
                     null,
                     null
             );
+            notifySecretWritten(secret);
 
             if (secret.getData() != null) {
                 secret.getData().forEach((k, v) -> secretMap.put(k, new String(v)));
@@ -360,7 +527,17 @@ public class KubeOperator {
         return secretMap;
     }
 
-    private String getDataKeyPath(String key) {
+    private void notifySecretWritten(V1Secret secret) {
+        for (Consumer<V1Secret> listener : secretWriteListeners) {
+            try {
+                listener.accept(secret);
+            } catch (Exception e) {
+                log.warn("Failed to notify secret write listener: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static String getDataKeyPath(String key) {
         return SECRET_DATA_PATH + "/" + key;
     }
 }
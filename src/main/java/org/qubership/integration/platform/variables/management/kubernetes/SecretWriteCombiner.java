@@ -0,0 +1,262 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.qubership.integration.platform.variables.management.kubernetes;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.qubership.integration.platform.variables.management.model.json.JsonPatch;
+import org.springframework.lang.Nullable;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Group commit of concurrent writes to the same secret. A write to an idle secret is applied at once
+ * in the caller thread, mutations arriving while it is in flight are applied one after another to a single
+ * read of the secret and sent as one JSON Patch, each caller gets its own result.
+ * If the patch is rejected, the mutations are repeated one by one, so each caller gets its own error.
+ */
+@Slf4j
+public class SecretWriteCombiner {
+    private static final String METRICS_PREFIX = "qip.secured.variables.write.combining";
+
+    /**
+     * @param patches patch operations turning the data before the mutation into the data after it
+     */
+    public record SecretPatch<R>(List<JsonPatch> patches, R result) {
+    }
+
+    @FunctionalInterface
+    public interface SecretMutation<R> {
+        /**
+         * @param data current data of the secret, must be changed to the state after the mutation
+         * @throws RuntimeException if the mutation is not valid for the data, only this caller fails
+         */
+        SecretPatch<R> apply(Map<String, String> data);
+    }
+
+    private record PendingMutation<R>(SecretMutation<R> mutation, CompletableFuture<R> result) {
+    }
+
+    private static final class SecretQueue {
+        // Guarded by this
+        private final List<PendingMutation<?>> pending = new ArrayList<>();
+        private boolean flushing;
+    }
+
+    private final KubeOperator operator;
+    private final Function<String, Map<String, String>> reader;
+    private final BiConsumer<String, Map<String, String>> writeListener;
+    private final Function<String, Lock> locks;
+    private final boolean enabled;
+    private final int maxBatch;
+    private final ExecutorService flusher;
+    private final DistributionSummary batchSizes;
+    private final ConcurrentMap<String, SecretQueue> queues = new ConcurrentHashMap<>();
+    private volatile boolean shutdown;
+
+    /**
+     * @param reader reads the current data of the secret by name
+     * @param writeListener notified with the data of the secret after every patch
+     * @param locks lock of the secret by name, held while the secret is read and patched
+     * @param enabled false - every mutation is read and patched alone, in the caller thread
+     * @param parallelism number of secrets with writes queued behind an in flight patch flushed at the same time
+     */
+    public SecretWriteCombiner(KubeOperator operator,
+                               Function<String, Map<String, String>> reader,
+                               BiConsumer<String, Map<String, String>> writeListener,
+                               Function<String, Lock> locks,
+                               boolean enabled,
+                               int maxBatch,
+                               int parallelism,
+                               MeterRegistry meterRegistry) {
+        this.operator = operator;
+        this.reader = reader;
+        this.writeListener = writeListener;
+        this.locks = locks;
+        this.enabled = enabled;
+        this.maxBatch = maxBatch;
+        this.flusher = Executors.newFixedThreadPool(parallelism, new BasicThreadFactory.Builder()
+                .namingPattern("secret-write-combiner-%d")
+                .daemon(true)
+                .build());
+        this.batchSizes = DistributionSummary.builder(METRICS_PREFIX + ".batch.size")
+                .description("Writes sent in one secret patch")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Writes not yet applied fail, so their callers don't wait forever
+     */
+    public void shutdown() {
+        shutdown = true;
+        flusher.shutdownNow();
+        queues.values().forEach(queue -> {
+            List<PendingMutation<?>> batch;
+            synchronized (queue) {
+                batch = new ArrayList<>(queue.pending);
+                queue.pending.clear();
+            }
+            batch.forEach(SecretWriteCombiner::fail);
+        });
+    }
+
+    /**
+     * Blocks until the mutation is applied to the secret
+     * @return result of the mutation
+     */
+    public <R> R write(String secretName, SecretMutation<R> mutation) {
+        PendingMutation<R> pending = new PendingMutation<>(mutation, new CompletableFuture<>());
+        if (enabled) {
+            SecretQueue queue = queues.computeIfAbsent(secretName, name -> new SecretQueue());
+            if (enqueue(queue, pending)) {
+                flush(secretName, queue);
+            }
+        } else {
+            apply(secretName, List.of(pending));
+        }
+
+        try {
+            return pending.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return true if no flush of the secret is in flight, then the caller must flush it
+     */
+    private boolean enqueue(SecretQueue queue, PendingMutation<?> pending) {
+        synchronized (queue) {
+            if (shutdown) {
+                fail(pending);
+                return false;
+            }
+            queue.pending.add(pending);
+            if (queue.flushing) {
+                return false;
+            }
+            queue.flushing = true;
+            return true;
+        }
+    }
+
+    private void flush(String secretName, SecretQueue queue) {
+        List<PendingMutation<?>> batch;
+        synchronized (queue) {
+            int size = Math.min(queue.pending.size(), maxBatch);
+            batch = new ArrayList<>(queue.pending.subList(0, size));
+            queue.pending.subList(0, size).clear();
+        }
+
+        try {
+            apply(secretName, batch);
+        } finally {
+            synchronized (queue) {
+                // Only one flush of a secret at a time, the next one takes the writes arrived meanwhile
+                if (queue.pending.isEmpty()) {
+                    queue.flushing = false;
+                } else {
+                    scheduleFlush(secretName, queue);
+                }
+            }
+        }
+    }
+
+    // Guarded by queue
+    private void scheduleFlush(String secretName, SecretQueue queue) {
+        try {
+            flusher.execute(() -> flush(secretName, queue));
+        } catch (RejectedExecutionException e) {
+            queue.pending.forEach(SecretWriteCombiner::fail);
+            queue.pending.clear();
+            queue.flushing = false;
+        }
+    }
+
+    private void apply(String secretName, List<PendingMutation<?>> batch) {
+        apply(secretName, batch, null);
+    }
+
+    /**
+     * @param combinedFailure error of the combined patch the batch is repeated after, kept as suppressed in its error
+     */
+    private void apply(String secretName, List<PendingMutation<?>> batch, @Nullable RuntimeException combinedFailure) {
+        batchSizes.record(batch.size());
+        Lock lock = locks.apply(secretName);
+        lock.lock();
+        try {
+            List<PendingMutation<?>> applied = new ArrayList<>();
+            List<Object> results = new ArrayList<>();
+            List<JsonPatch> patches = new ArrayList<>();
+            try {
+                Map<String, String> data = new HashMap<>(reader.apply(secretName));
+                for (PendingMutation<?> pending : batch) {
+                    // Mutation works on a copy, so a failed one leaves no partial changes
+                    Map<String, String> mutated = new HashMap<>(data);
+                    try {
+                        SecretPatch<?> patch = pending.mutation().apply(mutated);
+                        patches.addAll(patch.patches());
+                        results.add(patch.result());
+                        applied.add(pending);
+                        data = mutated;
+                    } catch (RuntimeException e) {
+                        pending.result().completeExceptionally(e);
+                    }
+                }
+                if (!patches.isEmpty()) {
+                    writeListener.accept(secretName, operator.updateSecretData(secretName, patches));
+                }
+            } catch (RuntimeException e) {
+                if (batch.size() > 1 && !patches.isEmpty()) {
+                    log.warn("Combined patch of {} writes to secret {} failed, writing individually: {}",
+                            applied.size(), secretName, e.getMessage());
+                    applied.forEach(pending -> apply(secretName, List.of(pending), e));
+                } else {
+                    if (combinedFailure != null && combinedFailure != e) {
+                        e.addSuppressed(combinedFailure);
+                    }
+                    batch.forEach(pending -> pending.result().completeExceptionally(e));
+                }
+                return;
+            }
+            for (int i = 0; i < applied.size(); i++) {
+                complete(applied.get(i), results.get(i));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void fail(PendingMutation<?> pending) {
+        pending.result().completeExceptionally(new IllegalStateException("Secret write combiner is shut down"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> void complete(PendingMutation<R> pending, Object result) {
+        pending.result().complete((R) result);
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.qubership.integration.platform.variables.management.kubernetes;
+
+import io.kubernetes.client.openapi.ApiException;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1Secret;
+import io.kubernetes.client.openapi.models.V1SecretList;
+import io.kubernetes.client.util.Watch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory copy of the secrets with secured variables, kept up to date by a single list and watch
+ * on the secrets label. The secrets are listed again when the watch resource version expires (410)
+ * and every resync period, to recover from missed events.
+ */
+@Slf4j
+@Component
+public class VariablesSecretsInformer {
+    private static final String METRICS_PREFIX = "qip.secured.variables.informer";
+    private static final int HTTP_GONE = 410;
+
+    /**
+     * Only the names are kept, writes read the values from the api server, the cached copy may lag other instances
+     */
+    private record CachedSecret(@Nullable String resourceVersion, Set<String> keys) {
+    }
+
+    private record PendingWrite(String resourceVersion, long writeTime) {
+    }
+
+    private final KubeOperator operator;
+    private final Pair<String, String> label;
+    private final boolean enabled;
+    private final int watchTimeout;
+    private final long resyncPeriod;
+    private final long maxStaleness;
+    private final long retryDelay;
+    private final MeterRegistry meterRegistry;
+    private final Timer writeLag;
+
+    private final ConcurrentMap<String, CachedSecret> secrets = new ConcurrentHashMap<>();
+    // Local writes not yet observed by the watch, used to measure the cache lag
+    private final ConcurrentMap<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+    private volatile boolean synced;
+    // Last time the api server confirmed the cache is up to date
+    private volatile long confirmedTime;
+
+    private volatile boolean running;
+    private Thread informerThread;
+    private volatile Watch<V1Secret> currentWatch;
+
+    @Autowired
+    public VariablesSecretsInformer(KubeOperator operator,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${kubernetes.variables-secret.label}") String kubeSecretsLabel,
+                                    @Value("${kubernetes.variables-secret.informer.enabled}") boolean enabled,
+                                    @Value("${kubernetes.variables-secret.informer.watch-timeout}") Duration watchTimeout,
+                                    @Value("${kubernetes.variables-secret.informer.resync-period}") Duration resyncPeriod,
+                                    @Value("${kubernetes.variables-secret.informer.max-staleness}") Duration maxStaleness,
+                                    @Value("${kubernetes.variables-secret.informer.retry-delay}") Duration retryDelay) {
+        this.operator = operator;
+        this.label = Pair.of(kubeSecretsLabel, "secured");
+        this.enabled = enabled;
+        this.watchTimeout = (int) watchTimeout.toSeconds();
+        this.resyncPeriod = resyncPeriod.toMillis();
+        this.maxStaleness = maxStaleness.toMillis();
+        this.retryDelay = retryDelay.toMillis();
+        this.meterRegistry = meterRegistry;
+        this.writeLag = Timer.builder(METRICS_PREFIX + ".lag")
+                .description("Time from a local write of a secret until the watch delivers it")
+                .register(meterRegistry);
+        TimeGauge.builder(METRICS_PREFIX + ".staleness", this, TimeUnit.MILLISECONDS, VariablesSecretsInformer::getStalenessMillis)
+                .description("Time since the api server last confirmed the cached secrets")
+                .register(meterRegistry);
+        Gauge.builder(METRICS_PREFIX + ".size", secrets, Map::size)
+                .description("Number of cached secrets")
+                .register(meterRegistry);
+        operator.addSecretWriteListener(this::onLocalWrite);
+    }
+
+    @EventListener
+    public synchronized void onApplicationEvent(ApplicationStartedEvent event) {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        informerThread = new Thread(this::inform, "variables-secrets-informer");
+        informerThread.setDaemon(true);
+        informerThread.start();
+        log.info("Secured variables secrets informer started");
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        closeWatch(currentWatch);
+        if (informerThread != null) {
+            informerThread.interrupt();
+            informerThread = null;
+        }
+    }
+
+    /**
+     * @return false if the secrets were never listed or the watch is broken for longer than max staleness,
+     * then the secrets must be read from the api server
+     */
+    public boolean isUsable() {
+        return synced && System.currentTimeMillis() - confirmedTime <= maxStaleness;
+    }
+
+    /**
+     * @return unmodifiable key set of the secret, empty if the cache is not usable or the secret is not cached
+     */
+    public Optional<Set<String>> getSecretKeys(String secretName) {
+        if (!isUsable()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(secrets.get(secretName)).map(CachedSecret::keys);
+    }
+
+    /**
+     * @return unmodifiable key sets of all the secrets by name, empty if the cache is not usable
+     */
+    public Optional<Map<String, Set<String>>> getAllSecretsKeys() {
+        if (!isUsable()) {
+            return Optional.empty();
+        }
+        Map<String, Set<String>> result = new HashMap<>();
+        secrets.forEach((name, secret) -> result.put(name, secret.keys()));
+        return Optional.of(result);
+    }
+
+    private void inform() {
+        String resourceVersion = null;
+        String relistReason = "initial";
+        long nextResync = 0;
+        while (running) {
+            try {
+                if (resourceVersion == null || System.currentTimeMillis() >= nextResync) {
+                    resourceVersion = list(resourceVersion == null ? relistReason : "resync");
+                    nextResync = System.currentTimeMillis() + resyncPeriod;
+                }
+                resourceVersion = watch(resourceVersion, nextResync);
+                if (resourceVersion == null) {
+                    relistReason = "expired";
+                }
+                continue;
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Failed to watch secured variables secrets, retry in {} ms: {}", retryDelay, e.getMessage());
+            }
+            resourceVersion = null;
+            relistReason = "error";
+            if (!pause()) {
+                break;
+            }
+        }
+        log.info("Secured variables secrets informer stopped");
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(retryDelay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private String list(String reason) {
+        Counter.builder(METRICS_PREFIX + ".relists")
+                .description("Full lists of the secrets")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        long startTime = System.currentTimeMillis();
+        V1SecretList list = operator.listSecretsWithLabel(label);
+        String listVersion = list.getMetadata() == null ? null : list.getMetadata().getResourceVersion();
+
+        Set<String> listed = new HashSet<>();
+        for (V1Secret secret : list.getItems()) {
+            if (secret.getMetadata() != null) {
+                listed.add(secret.getMetadata().getName());
+                apply(secret);
+            }
+        }
+        // Secrets created by a local write during the list are kept
+        secrets.entrySet().removeIf(entry -> !listed.contains(entry.getKey())
+                && !isNewer(entry.getValue().resourceVersion(), listVersion));
+        synced = true;
+        confirmedTime = startTime;
+        if (log.isDebugEnabled()) {
+            log.debug("Secured variables secrets listed ({}) at version {}, {} secrets", reason, listVersion, secrets.size());
+        }
+        return listVersion;
+    }
+
+    /**
+     * @return resource version to continue from, null if it expired and the secrets must be listed again
+     */
+    @Nullable
+    private String watch(String resourceVersion, long until) throws IOException {
+        Watch<V1Secret> watch;
+        try {
+            watch = operator.watchSecretsWithLabel(label, resourceVersion, watchTimeout);
+        } catch (ApiException e) {
+            if (e.getCode() == HTTP_GONE) {
+                return null;
+            }
+            throw new KubeApiException("Failed to watch secrets: " + e.getResponseBody(), e);
+        }
+
+        currentWatch = watch;
+        try (watch) {
+            for (Watch.Response<V1Secret> event : watch) {
+                if ("ERROR".equals(event.type)) {
+                    if (event.status != null && Objects.equals(event.status.getCode(), HTTP_GONE)) {
+                        return null;
+                    }
+                    throw new KubeApiException("Secrets watch failed: "
+                            + (event.status == null ? "unknown error" : event.status.getMessage()));
+                }
+
+                V1ObjectMeta metadata = event.object == null ? null : event.object.getMetadata();
+                if (metadata == null) {
+                    continue;
+                }
+                switch (event.type) {
+                    case "ADDED", "MODIFIED" -> apply(event.object);
+                    case "DELETED" -> remove(metadata);
+                    default -> {
+                        // BOOKMARK only moves the resource version
+                    }
+                }
+                if (metadata.getResourceVersion() != null) {
+                    resourceVersion = metadata.getResourceVersion();
+                }
+                confirmedTime = System.currentTimeMillis();
+                if (confirmedTime >= until) {
+                    break;
+                }
+            }
+        } finally {
+            currentWatch = null;
+        }
+        // Watch ended by the timeout with no changes missed, the next one continues from the resource version
+        confirmedTime = System.currentTimeMillis();
+        return resourceVersion;
+    }
+
+    private void onLocalWrite(V1Secret secret) {
+        V1ObjectMeta metadata = secret.getMetadata();
+        if (!enabled || metadata == null || metadata.getLabels() == null
+                || !label.getValue().equals(metadata.getLabels().get(label.getKey()))) {
+            return;
+        }
+        if (apply(secret) && metadata.getResourceVersion() != null) {
+            pendingWrites.put(metadata.getName(), new PendingWrite(metadata.getResourceVersion(), System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * @return true if the secret replaced an older cached state
+     */
+    private boolean apply(V1Secret secret) {
+        V1ObjectMeta metadata = Objects.requireNonNull(secret.getMetadata());
+        String resourceVersion = metadata.getResourceVersion();
+        observe(metadata.getName(), resourceVersion);
+
+        Map<String, byte[]> data = secret.getData() == null ? Collections.emptyMap() : secret.getData();
+        CachedSecret newSecret = new CachedSecret(resourceVersion, Collections.unmodifiableSet(new HashSet<>(data.keySet())));
+        CachedSecret result = secrets.merge(metadata.getName(), newSecret, (current, update) ->
+                isNewer(current.resourceVersion(), update.resourceVersion()) ? current : update);
+        return result == newSecret;
+    }
+
+    private void remove(V1ObjectMeta metadata) {
+        observe(metadata.getName(), metadata.getResourceVersion());
+        secrets.computeIfPresent(metadata.getName(), (name, current) ->
+                isNewer(current.resourceVersion(), metadata.getResourceVersion()) ? current : null);
+    }
+
+    private void observe(String secretName, @Nullable String resourceVersion) {
+        pendingWrites.computeIfPresent(secretName, (name, write) -> {
+            if (isNewer(write.resourceVersion(), resourceVersion)) {
+                return write;
+            }
+            writeLag.record(System.currentTimeMillis() - write.writeTime(), TimeUnit.MILLISECONDS);
+            return null;
+        });
+    }
+
+    /**
+     * Resource versions are opaque, but numeric in practice (etcd revisions), so a delayed event
+     * does not overwrite a newer state written locally. Non numeric versions are always taken as older.
+     */
+    private static boolean isNewer(@Nullable String resourceVersion, @Nullable String than) {
+        if (resourceVersion == null || than == null) {
+            return false;
+        }
+        try {
+            return Long.parseLong(resourceVersion) > Long.parseLong(than);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static void closeWatch(@Nullable Watch<V1Secret> watch) {
+        if (watch == null) {
+            return;
+        }
+        try {
+            watch.close();
+        } catch (IOException e) {
+            log.debug("Failed to close secrets watch: {}", e.getMessage());
+        }
+    }
+
+    private double getStalenessMillis() {
+        return synced ? System.currentTimeMillis() - confirmedTime : Double.NaN;
+    }
+}
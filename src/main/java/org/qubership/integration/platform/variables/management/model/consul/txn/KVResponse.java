@@ -37,6 +37,10 @@ public class KVResponse {
     @JsonProperty("Value")
     private String value;
 
+    public byte[] getDecodedBytes() {
+        return this.value == null ? null : Base64.getDecoder().decode(this.value);
+    }
+
     public String getDecodedValue() {
         return this.value == null ?
                 null :
@@ -16,6 +16,7 @@
 
 package org.qubership.integration.platform.variables.management.model.consul.txn.request;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.*;
 
@@ -37,13 +38,30 @@ public class TxnKVRequest {
     @JsonProperty("Value")
     private String value;
 
+    /**
+     * Expected ModifyIndex of the key, used by {@link TxnVerb#CAS}
+     */
+    @Nullable
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty("Index")
+    private Long index;
+
     public TxnKVRequest(TxnVerb verb, String key, @Nullable String value) {
+        this(verb, key, value, null);
+    }
+
+    public TxnKVRequest(TxnVerb verb, String key, @Nullable String value, @Nullable Long index) {
         this.verb = verb;
         this.key = key;
+        this.index = index;
         setValue(value);
     }
 
     public void setValue(@Nullable String value) {
         this.value = value != null ? Base64.getEncoder().encodeToString(value.getBytes()) : null;
     }
+
+    public void setBinaryValue(@Nullable byte[] value) {
+        this.value = value != null ? Base64.getEncoder().encodeToString(value) : null;
+    }
 }
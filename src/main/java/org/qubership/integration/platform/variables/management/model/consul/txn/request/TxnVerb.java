@@ -25,4 +25,14 @@ public enum TxnVerb {
     GET,
     @JsonProperty("delete")
     DELETE,
+    /**
+     * Set the value only if ModifyIndex of the key matches the request index, 0 - only if the key does not exist
+     */
+    @JsonProperty("cas")
+    CAS,
+    /**
+     * Delete all keys with the key as a prefix
+     */
+    @JsonProperty("delete-tree")
+    DELETE_TREE,
 }
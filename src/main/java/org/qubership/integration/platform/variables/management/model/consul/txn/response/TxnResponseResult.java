@@ -17,7 +17,7 @@
 package org.qubership.integration.platform.variables.management.model.consul.txn.response;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-import org.qubership.integration.platform.variables.management.model.consul.txn.KVResponse;
+import org.qubership.integration.platform.variables.management.model.consul.txn.KeyResponse;
 import lombok.*;
 
 @Getter
@@ -27,5 +27,5 @@ import lombok.*;
 @Builder
 public class TxnResponseResult {
     @JsonProperty("KV")
-    private KVResponse kv;
+    private KeyResponse kv;
 }
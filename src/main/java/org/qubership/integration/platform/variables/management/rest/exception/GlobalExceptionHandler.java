@@ -17,7 +17,9 @@
 package org.qubership.integration.platform.variables.management.rest.exception;
 
 import org.qubership.integration.platform.variables.management.consul.ConsulException;
+import org.qubership.integration.platform.variables.management.consul.ConsulUnavailableException;
 import org.qubership.integration.platform.variables.management.consul.TxnConflictException;
+import org.qubership.integration.platform.variables.management.consul.TxnPayloadTooLargeException;
 import org.qubership.integration.platform.variables.management.kubernetes.KubeApiException;
 import jakarta.persistence.EntityExistsException;
 import jakarta.persistence.EntityNotFoundException;
@@ -70,6 +72,11 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(getExceptionDTO(exception));
     }
 
+    @ExceptionHandler(MalformedCursorException.class)
+    public ResponseEntity<ExceptionDTO> handleMalformedCursorException(MalformedCursorException exception) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(getExceptionDTOWithoutStacktrace(exception));
+    }
+
     @ExceptionHandler(SecuredVariablesException.class)
     public ResponseEntity<ExceptionDTO> handleSecuredVariablesException(SecuredVariablesException exception) {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(getExceptionDTO(exception));
@@ -80,11 +87,26 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(getExceptionDTOWithoutStacktrace(exception));
     }
 
+    @ExceptionHandler(ConsulUnavailableException.class)
+    public ResponseEntity<ExceptionDTO> handleConsulUnavailableException(ConsulUnavailableException exception) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(getExceptionDTOWithoutStacktrace(exception));
+    }
+
     @ExceptionHandler(TxnConflictException.class)
     public ResponseEntity<ExceptionDTO> handleTxnConflictException(TxnConflictException exception) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(getExceptionDTOWithoutStacktrace(exception));
     }
 
+    @ExceptionHandler(CommonVariableVersionMismatchException.class)
+    public ResponseEntity<ExceptionDTO> handleCommonVariableVersionMismatchException(CommonVariableVersionMismatchException exception) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(getExceptionDTOWithoutStacktrace(exception));
+    }
+
+    @ExceptionHandler(TxnPayloadTooLargeException.class)
+    public ResponseEntity<ExceptionDTO> handleTxnPayloadTooLargeException(TxnPayloadTooLargeException exception) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(getExceptionDTOWithoutStacktrace(exception));
+    }
+
     @ExceptionHandler(SecuredVariablesNotFoundException.class)
     public ResponseEntity<ExceptionDTO> handleSecuredVariablesNotFoundException(SecuredVariablesNotFoundException exception) {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(getExceptionDTO(exception));
@@ -16,6 +16,7 @@
 
 package org.qubership.integration.platform.variables.management.rest.v1.controller;
 
+import org.qubership.integration.platform.variables.management.rest.exception.CommonVariableVersionMismatchException;
 import org.qubership.integration.platform.variables.management.rest.v1.dto.StringResponse;
 import org.qubership.integration.platform.variables.management.rest.v1.dto.variables.ImportVariableDTO;
 import org.qubership.integration.platform.variables.management.rest.v1.dto.variables.ImportVariablePreview;
@@ -31,17 +32,21 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Pattern;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.DigestUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 import static org.qubership.integration.platform.variables.management.validation.EntityValidator.ENTITY_NAME_REGEXP;
 
@@ -62,13 +67,21 @@ public class CommonVariablesController {
         this.commonVariablesMapper = commonVariablesMapper;
     }
 
-    @Operation(description = "Get all common variables")
+    @Operation(description = "Get all common variables. Supports conditional requests, "
+            + "304 is returned if the ETag from If-None-Match is current")
     @GetMapping()
-    public ResponseEntity<Map<String, String>> getVariables() {
+    public ResponseEntity<Map<String, String>> getVariables(WebRequest request) {
         if (log.isDebugEnabled()) {
             log.debug("Request to get common variables");
         }
-        return ResponseEntity.ok(commonVariablesService.getVariables());
+        Pair<Long, Map<String, String>> variables = commonVariablesService.getVariablesWithVersion();
+        String eTag = getVersionTag(variables);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .body(variables.getRight());
     }
 
     @Operation(extensions = @Extension(properties = {@ExtensionProperty(name = "x-api-kind", value = "bwc")}),
@@ -95,11 +108,35 @@ public class CommonVariablesController {
         String name,
         @RequestBody(required = false)
         @Parameter(description = "New value of the parameter")
-        String value
+        String value,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+        @Parameter(description = "Expected version of the variable (ETag of the previous update), \"0\" - the variable must not exist, "
+                + "\"*\" - the variable must exist")
+        String ifMatch
     ) {
         log.info("Request to update common variable {}", name);
-        String commonVariable = commonVariablesService.addVariable(name, value);
-        return ResponseEntity.ok(new StringResponse(commonVariable));
+        long version = commonVariablesService.addVariable(name, value, parseVersion(name, ifMatch));
+        return ResponseEntity.ok()
+                .eTag(Long.toString(version))
+                .body(new StringResponse(name));
+    }
+
+    /**
+     * @return expected version from If-Match header, null if there is no precondition
+     */
+    private static Long parseVersion(String name, String ifMatch) {
+        String version = StringUtils.trimToNull(ifMatch);
+        if (version == null) {
+            return null;
+        }
+        if ("*".equals(version)) {
+            return CommonVariablesService.ANY_EXISTING_VERSION;
+        }
+        version = StringUtils.unwrap(StringUtils.removeStart(version, "W/"), '"');
+        if (!StringUtils.isNumeric(version)) {
+            throw new CommonVariableVersionMismatchException(name);
+        }
+        return Long.parseLong(version);
     }
 
     @Operation(extensions = @Extension(properties = {@ExtensionProperty(name = "x-api-kind", value = "bwc")}),
@@ -111,7 +148,8 @@ public class CommonVariablesController {
         return ResponseEntity.noContent().build();
     }
 
-    @Operation(description = "Export common variables as a file")
+    @Operation(description = "Export common variables as a file. Supports conditional requests, "
+            + "304 is returned if the ETag from If-None-Match is current")
     @GetMapping(value = "/export", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
     public ResponseEntity<Object> exportVariables(
             @Valid
@@ -120,15 +158,52 @@ public class CommonVariablesController {
             List<@Pattern(regexp = ENTITY_NAME_REGEXP, message = "does not match \"{regexp}\"") String> variablesNames,
             @RequestParam(defaultValue = "false")
             @Parameter(description = "Whether response should be in archive")
-            boolean asArchive
+            boolean asArchive,
+            WebRequest request
     ) {
         log.info("Request to export common variables");
-        VariablesFileResponse response = commonVariablesService.exportVariables(variablesNames, asArchive);
+        // File is built from the same read the ETag is derived from.
+        // Same variables version with other export parameters is a different file.
+        Pair<Long, Map<String, String>> variables = commonVariablesService.getVariablesWithVersion();
+        String eTag = getVersionTag(variables) + "-" + digest(List.of(
+                variablesNames == null ? "" : String.join(",", new TreeSet<>(variablesNames)),
+                Boolean.toString(asArchive)));
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+
+        VariablesFileResponse response = commonVariablesService.exportVariables(variables.getRight(), variablesNames, asArchive);
         if (response == null || response.getContent() == null) {
             return ResponseEntity.noContent().build();
         }
 
-        return ExportImportUtils.bytesAsResponse(response.getContent(), response.getFileName());
+        ResponseEntity<Object> fileResponse = ExportImportUtils.bytesAsResponse(response.getContent(), response.getFileName());
+        return ResponseEntity.status(fileResponse.getStatusCode())
+                .headers(fileResponse.getHeaders())
+                .eTag(eTag)
+                .body(fileResponse.getBody());
+    }
+
+    /**
+     * @return consul index of the variables, or a digest of them if the index is unknown
+     */
+    private static String getVersionTag(Pair<Long, Map<String, String>> variables) {
+        if (variables.getLeft() > 0) {
+            return Long.toString(variables.getLeft());
+        }
+        List<String> parts = new ArrayList<>();
+        new TreeMap<>(variables.getRight()).forEach((name, value) -> {
+            parts.add(name);
+            parts.add(value);
+        });
+        return "d" + digest(parts);
+    }
+
+    // Parts are length-prefixed, so different splits of the same characters don't collide
+    private static String digest(List<String> parts) {
+        StringBuilder content = new StringBuilder();
+        parts.forEach(part -> content.append(part.length()).append(':').append(part));
+        return DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8));
     }
 
     @Deprecated(since = "24.4")
@@ -21,11 +21,16 @@ import io.swagger.v3.oas.annotations.media.Schema;
 @Schema(description = "Status of variable import", type = "string", allowableValues = {
         "CREATED",
         "UPDATED",
+        "UNCHANGED",
         "ERROR",
 })
 public enum ImportVariableStatus {
     CREATED,
     UPDATED,
+    /**
+     * Variable already has the same value, nothing is written
+     */
+    UNCHANGED,
     ERROR,
     IGNORED
 }
@@ -16,11 +16,26 @@
 
 package org.qubership.integration.platform.variables.management.rest.v2.controller;
 
+import org.qubership.integration.platform.variables.management.consul.CommonVariablesDelta;
+import org.qubership.integration.platform.variables.management.rest.v2.dto.variables.CommonVariablesMigrationState;
+import org.qubership.integration.platform.variables.management.rest.v2.dto.variables.CommonVariablesMigrationStatus;
+import org.qubership.integration.platform.variables.management.rest.v2.dto.variables.CommonVariablesPage;
 import org.qubership.integration.platform.variables.management.rest.v2.dto.variables.ImportVariablesResult;
+import org.qubership.integration.platform.variables.management.service.CommonVariablesMigrationService;
+import org.qubership.integration.platform.variables.management.service.CommonVariablesQueryService;
 import org.qubership.integration.platform.variables.management.service.CommonVariablesService;
+import org.qubership.integration.platform.variables.management.service.CommonVariablesWatchService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
@@ -36,11 +51,38 @@ import java.util.Set;
 @Tag(name = "common-variables-controller-v-2", description = "Common Variables Controller V2")
 public class CommonVariablesControllerV2 {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final CommonVariablesService commonVariablesService;
+    private final CommonVariablesQueryService commonVariablesQueryService;
+    private final CommonVariablesMigrationService commonVariablesMigrationService;
+    private final CommonVariablesWatchService commonVariablesWatchService;
 
     @Autowired
-    public CommonVariablesControllerV2(CommonVariablesService commonVariablesService) {
+    public CommonVariablesControllerV2(CommonVariablesService commonVariablesService,
+                                       CommonVariablesQueryService commonVariablesQueryService,
+                                       CommonVariablesMigrationService commonVariablesMigrationService,
+                                       CommonVariablesWatchService commonVariablesWatchService) {
         this.commonVariablesService = commonVariablesService;
+        this.commonVariablesQueryService = commonVariablesQueryService;
+        this.commonVariablesMigrationService = commonVariablesMigrationService;
+        this.commonVariablesWatchService = commonVariablesWatchService;
+    }
+
+    @Operation(description = "Page of common variables sorted by name. "
+            + "Pass nextCursor of the previous page as cursor to get the next one")
+    @GetMapping
+    public ResponseEntity<CommonVariablesPage> getVariablesPage(
+            @RequestParam(defaultValue = "100") @Min(1) @Max(MAX_PAGE_SIZE) @Parameter(description = "Page size")
+            int limit,
+            @RequestParam(required = false) @Parameter(description = "nextCursor of the previous page") String cursor,
+            @RequestParam(defaultValue = "ASC") @Parameter(description = "Sort direction by name") Sort.Direction sort,
+            @RequestParam(required = false) @Parameter(description = "Name prefix") String prefix,
+            @RequestParam(required = false) @Parameter(description = "Name substring, case-insensitive") String contains,
+            @RequestParam(defaultValue = "false") @Parameter(description = "Return names without values") boolean namesOnly
+    ) {
+        return ResponseEntity.ok(commonVariablesQueryService.getVariablesPage(
+                limit, cursor, sort.isAscending(), prefix, contains, namesOnly));
     }
 
     @PostMapping(value = "/import")
@@ -52,4 +94,54 @@ public class CommonVariablesControllerV2 {
         ImportVariablesResult importVariablesResult = commonVariablesService.importVariables(file, variablesNames);
         return ResponseEntity.ok(importVariablesResult);
     }
+
+    @Operation(description = "Common variables created, modified or deleted since the index. "
+            + "On full resync all variables are returned and replace the client state. "
+            + "The returned index is the one to request the next delta since.")
+    @GetMapping(value = "/changes")
+    public ResponseEntity<CommonVariablesDelta> getVariablesDelta(
+            @RequestParam(defaultValue = "0") @Parameter(description = "Index of the last sync, 0 for the initial one")
+            long since
+    ) {
+        return ResponseEntity.ok(commonVariablesService.getVariablesDelta(since));
+    }
+
+    @Operation(description = "Watch common variables changes. Long polling by default: responds as soon as there are "
+            + "changes after the index, or with no changes on timeout. With 'Accept: text/event-stream' streams "
+            + "the changes as server-sent events, the event id is the index to resume from. "
+            + "Clients must read all variables again on resync.")
+    @GetMapping(value = "/watch")
+    public Object watchVariables(
+            @RequestParam(required = false) @Parameter(description = "Last index known to the client") Long index,
+            @RequestParam(required = false) @Parameter(description = "Max long polling time in ms") Long wait,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept
+    ) {
+        if (accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE)) {
+            // Reconnecting EventSource sends the original ?index again, the Last-Event-ID it resumes from takes precedence
+            return commonVariablesWatchService.subscribe(lastEventId != null ? lastEventId : index);
+        }
+        return commonVariablesWatchService.watch(index == null ? 0 : index, wait);
+    }
+
+    @Operation(description = "Start migration of legacy per-tenant common variables to the current storage. "
+            + "Existing variables are not overwritten, the legacy storage is deleted only after successful verification")
+    @PostMapping(value = "/migration")
+    public ResponseEntity<CommonVariablesMigrationStatus> startMigration(
+            @RequestParam(defaultValue = "true") @Parameter(description = "Delete legacy variables after verification")
+            boolean deleteLegacy
+    ) {
+        log.info("Request to migrate legacy common variables");
+        CommonVariablesMigrationStatus running = commonVariablesMigrationService.getStatus();
+        if (running.getState() == CommonVariablesMigrationState.RUNNING) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(running);
+        }
+        return ResponseEntity.accepted().body(commonVariablesMigrationService.start(deleteLegacy));
+    }
+
+    @Operation(description = "Progress of legacy common variables migration")
+    @GetMapping(value = "/migration")
+    public ResponseEntity<CommonVariablesMigrationStatus> getMigrationStatus() {
+        return ResponseEntity.ok(commonVariablesMigrationService.getStatus());
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.rest.v2.dto.variables;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.SuperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@SuperBuilder
+@Schema(description = "Progress of legacy (v1) common variables migration")
+public class CommonVariablesMigrationStatus {
+    private CommonVariablesMigrationState state;
+    @Schema(description = "Number of tenants read from the legacy tree")
+    private long tenants;
+    @Schema(description = "Number of legacy variables read")
+    private long read;
+    @Schema(description = "Number of variables written to the current tree")
+    private long written;
+    @Schema(description = "Number of variables already present in the current tree with the same value")
+    private long skipped;
+    @Schema(description = "Number of variables present in the current tree or in several tenants with different values, "
+            + "not migrated")
+    private long conflictsCount;
+    @Schema(description = "Names of conflicting variables, limited")
+    @Builder.Default
+    private List<String> conflicts = new ArrayList<>();
+    @Schema(description = "Number of migrated variables whose checksum in the current tree does not match the legacy one")
+    private long mismatchesCount;
+    @Schema(description = "Names of mismatched variables, limited")
+    @Builder.Default
+    private List<String> mismatches = new ArrayList<>();
+    @Schema(description = "Whether the legacy tree was deleted after successful verification")
+    private boolean legacyDeleted;
+    @Schema(description = "Start time, epoch millis")
+    private Long startedAt;
+    @Schema(description = "Finish time, epoch millis")
+    private Long finishedAt;
+    @Schema(description = "Read variables per second")
+    private double throughput;
+    private String errorMessage;
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.rest.v2.dto.variables;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.SuperBuilder;
+
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@SuperBuilder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Page of common variables sorted by name")
+public class CommonVariablesPage {
+    @Schema(description = "Consul index of the variables the page is taken from")
+    private long index;
+    @Schema(description = "Names of the variables on the page, in the requested order")
+    private List<String> names;
+    @Schema(description = "Variables on the page, in the requested order. Absent for names only requests")
+    private Map<String, String> variables;
+    @Schema(description = "Cursor of the next page, absent on the last page")
+    private String nextCursor;
+    @Schema(description = "Number of variables matching the filters, absent when filtered by substring")
+    private Integer total;
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.tuple.Pair;
+import org.qubership.integration.platform.variables.management.consul.ConsulReadMode;
+import org.qubership.integration.platform.variables.management.consul.ConsulService;
+import org.qubership.integration.platform.variables.management.consul.TxnConflictException;
+import org.qubership.integration.platform.variables.management.persistence.configs.entity.actionlog.ActionLog;
+import org.qubership.integration.platform.variables.management.persistence.configs.entity.actionlog.EntityType;
+import org.qubership.integration.platform.variables.management.persistence.configs.entity.actionlog.LogOperation;
+import org.qubership.integration.platform.variables.management.rest.v2.dto.variables.CommonVariablesMigrationState;
+import org.qubership.integration.platform.variables.management.rest.v2.dto.variables.CommonVariablesMigrationStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Moves legacy (v1) per-tenant common variables to the current tree.
+ * The legacy tree is streamed once to find conflicts, then read tenant by tenant and written in parallel
+ * check-and-set batches, so existing variables are never overwritten. The result is verified by checksums of the written values, the legacy tree is deleted
+ * only if the verification passed and there were no conflicts.
+ */
+@Slf4j
+@Service
+public class CommonVariablesMigrationService {
+    private static final String METRICS_PREFIX = "qip.common.variables.migration";
+    private static final int MAX_REPORTED_NAMES = 1000;
+
+    private final ConsulService consulService;
+    private final ActionsLogService actionLogger;
+    private final int batchSize;
+    private final int parallelism;
+    private final ExecutorService runner;
+    private final ExecutorService writers;
+    private final Counter writtenCounter;
+    private final Counter skippedCounter;
+    private final Counter conflictsCounter;
+    private final Timer batchTimer;
+
+    // Guarded by this
+    private Migration current;
+
+    @Autowired
+    public CommonVariablesMigrationService(ConsulService consulService,
+                                           ActionsLogService actionLogger,
+                                           MeterRegistry meterRegistry,
+                                           @Value("${consul.migration.batch-size}") int batchSize,
+                                           @Value("${consul.migration.parallelism}") int parallelism) {
+        this.consulService = consulService;
+        this.actionLogger = actionLogger;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.runner = Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
+                .namingPattern("common-variables-migration-%d")
+                .daemon(true)
+                .build());
+        this.writers = Executors.newFixedThreadPool(parallelism, new BasicThreadFactory.Builder()
+                .namingPattern("common-variables-migration-writer-%d")
+                .daemon(true)
+                .build());
+        this.writtenCounter = migratedVariablesCounter(meterRegistry, "written");
+        this.skippedCounter = migratedVariablesCounter(meterRegistry, "skipped");
+        this.conflictsCounter = migratedVariablesCounter(meterRegistry, "conflict");
+        this.batchTimer = Timer.builder(METRICS_PREFIX + ".batches")
+                .description("Legacy common variables migration batch writes")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    /**
+     * Starts the migration in background if it is not running
+     * @param deleteLegacy delete the legacy tree after successful verification
+     * @return status of the started or already running migration
+     */
+    public synchronized CommonVariablesMigrationStatus start(boolean deleteLegacy) {
+        if (current != null && current.state == CommonVariablesMigrationState.RUNNING) {
+            return current.toStatus();
+        }
+        Migration migration = new Migration();
+        current = migration;
+        actionLogger.logAction(ActionLog.builder()
+                .entityType(EntityType.COMMON_VARIABLE)
+                .entityName("legacy common variables")
+                .operation(LogOperation.MOVE)
+                .build());
+        runner.execute(() -> run(migration, deleteLegacy));
+        return migration.toStatus();
+    }
+
+    public synchronized CommonVariablesMigrationStatus getStatus() {
+        return current == null
+                ? CommonVariablesMigrationStatus.builder().state(CommonVariablesMigrationState.NOT_STARTED).build()
+                : current.toStatus();
+    }
+
+    private void run(Migration migration, boolean deleteLegacy) {
+        log.info("Legacy common variables migration started");
+        try {
+            Map<String, String> existing = consulService.getAllCommonVariables(ConsulReadMode.DEFAULT);
+            // Checksums of the values to be found in the current tree after migration
+            Map<String, Long> expected = new HashMap<>();
+            Set<String> tenantsConflicts = new HashSet<>();
+            Set<String> tenants = new TreeSet<>();
+
+            // First pass only collects checksums, so cross-tenant conflicts are known before anything is written.
+            // The consumer is idempotent, a repeated read may pass the same variables again.
+            int read = consulService.streamLegacyCommonVariables((tenant, name, value) -> {
+                if (tenants.add(tenant)) {
+                    migration.tenants.incrementAndGet();
+                }
+                long checksum = checksum(value);
+                Long previous = expected.putIfAbsent(name, checksum);
+                if (previous != null && previous != checksum) {
+                    tenantsConflicts.add(name);
+                }
+            });
+            migration.read.set(read);
+
+            Set<String> toWrite = new HashSet<>();
+            expected.forEach((name, checksum) -> {
+                String currentValue = existing.get(name);
+                if (tenantsConflicts.contains(name) || (currentValue != null && checksum(currentValue) != checksum)) {
+                    migration.conflict(name);
+                } else if (currentValue != null) {
+                    migration.skipped.incrementAndGet();
+                    skippedCounter.increment();
+                } else {
+                    toWrite.add(name);
+                }
+            });
+
+            // Second pass reads the tenants one by one, writers are waited for between the reads,
+            // so memory is bounded by a tenant and parallelism * batch size
+            List<Future<?>> batches = new ArrayList<>();
+            Semaphore inFlight = new Semaphore(parallelism);
+            Map<String, String> batch = new HashMap<>();
+            for (String tenant : tenants) {
+                Map<String, String> tenantVariables = new HashMap<>();
+                consulService.streamLegacyCommonVariables(tenant, (variableTenant, name, value) -> {
+                    if (toWrite.contains(name)) {
+                        tenantVariables.put(name, value);
+                    }
+                });
+                for (Map.Entry<String, String> variable : tenantVariables.entrySet()) {
+                    // Values of the same variable are equal in all tenants, the first one is written
+                    if (!toWrite.remove(variable.getKey())) {
+                        continue;
+                    }
+                    batch.put(variable.getKey(), variable.getValue());
+                    if (batch.size() == batchSize) {
+                        batches.add(submit(migration, new HashMap<>(batch), inFlight));
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.add(submit(migration, new HashMap<>(batch), inFlight));
+            }
+            for (Future<?> future : batches) {
+                future.get();
+            }
+
+            verify(migration, expected);
+            if (migration.mismatches.isEmpty() && migration.conflicts.isEmpty()) {
+                if (deleteLegacy && migration.read.get() > 0) {
+                    consulService.deleteLegacyVariablesKV();
+                    migration.legacyDeleted = true;
+                }
+                migration.finish(CommonVariablesMigrationState.COMPLETED, null);
+            } else {
+                migration.finish(CommonVariablesMigrationState.VERIFICATION_FAILED, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            migration.finish(CommonVariablesMigrationState.FAILED, "Interrupted");
+        } catch (ExecutionException e) {
+            log.error("Legacy common variables migration failed", e.getCause());
+            migration.finish(CommonVariablesMigrationState.FAILED, e.getCause().getMessage());
+        } catch (Exception e) {
+            log.error("Legacy common variables migration failed", e);
+            migration.finish(CommonVariablesMigrationState.FAILED, e.getMessage());
+        }
+        log.info("Legacy common variables migration finished: {}, read {}, written {}, skipped {}, conflicts {}, "
+                        + "mismatches {}, legacy deleted: {}", migration.state, migration.read, migration.written,
+                migration.skipped, migration.conflicts.size(), migration.mismatches.size(), migration.legacyDeleted);
+    }
+
+    private Future<?> submit(Migration migration, Map<String, String> batch, Semaphore inFlight)
+            throws InterruptedException {
+        inFlight.acquire();
+        try {
+            return writers.submit(() -> {
+                try {
+                    batchTimer.record(() -> writeBatch(migration, batch));
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private void writeBatch(Migration migration, Map<String, String> batch) {
+        try {
+            consulService.updateCommonVariables(batch, Collections.emptyMap());
+            migration.written.addAndGet(batch.size());
+            writtenCounter.increment(batch.size());
+        } catch (TxnConflictException e) {
+            // Some variables were created concurrently or a part of the batch was applied, sort out one by one
+            batch.forEach((name, value) -> writeVariable(migration, name, value));
+        }
+    }
+
+    private void writeVariable(Migration migration, String name, String value) {
+        try {
+            consulService.updateCommonVariable(name, value, 0);
+            migration.written.incrementAndGet();
+            writtenCounter.increment();
+        } catch (TxnConflictException e) {
+            Pair<String, Long> currentValue = consulService.getCommonVariableWithIndex(name);
+            if (currentValue != null && value.equals(currentValue.getLeft())) {
+                migration.written.incrementAndGet();
+                writtenCounter.increment();
+            } else {
+                migration.conflict(name);
+            }
+        }
+    }
+
+    private void verify(Migration migration, Map<String, Long> expected) {
+        Map<String, String> migrated = consulService.getAllCommonVariables(ConsulReadMode.DEFAULT);
+        expected.forEach((name, checksum) -> {
+            if (migration.conflicts.contains(name)) {
+                return;
+            }
+            String value = migrated.get(name);
+            if (value == null || checksum(value) != checksum) {
+                migration.mismatch(name);
+            }
+        });
+    }
+
+    private static long checksum(String value) {
+        CRC32C crc = new CRC32C();
+        crc.update(value.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private Counter migratedVariablesCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder(METRICS_PREFIX + ".variables")
+                .description("Legacy common variables processed by migration")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private class Migration {
+        private final long startedAt = System.currentTimeMillis();
+        private final AtomicLong tenants = new AtomicLong();
+        private final AtomicLong read = new AtomicLong();
+        private final AtomicLong written = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final Set<String> conflicts = ConcurrentHashMap.newKeySet();
+        private final Set<String> mismatches = ConcurrentHashMap.newKeySet();
+        private volatile CommonVariablesMigrationState state = CommonVariablesMigrationState.RUNNING;
+        private volatile boolean legacyDeleted;
+        private volatile Long finishedAt;
+        private volatile String errorMessage;
+
+        void conflict(String name) {
+            if (conflicts.add(name)) {
+                conflictsCounter.increment();
+            }
+        }
+
+        void mismatch(String name) {
+            mismatches.add(name);
+        }
+
+        void finish(CommonVariablesMigrationState state, String errorMessage) {
+            this.errorMessage = errorMessage;
+            this.finishedAt = System.currentTimeMillis();
+            this.state = state;
+        }
+
+        CommonVariablesMigrationStatus toStatus() {
+            long elapsed = (finishedAt == null ? System.currentTimeMillis() : finishedAt) - startedAt;
+            return CommonVariablesMigrationStatus.builder()
+                    .state(state)
+                    .tenants(tenants.get())
+                    .read(read.get())
+                    .written(written.get())
+                    .skipped(skipped.get())
+                    .conflictsCount(conflicts.size())
+                    .conflicts(conflicts.stream().sorted().limit(MAX_REPORTED_NAMES).toList())
+                    .mismatchesCount(mismatches.size())
+                    .mismatches(mismatches.stream().sorted().limit(MAX_REPORTED_NAMES).toList())
+                    .legacyDeleted(legacyDeleted)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .throughput(elapsed > 0 ? read.get() * 1000.0 / elapsed : 0)
+                    .errorMessage(errorMessage)
+                    .build();
+        }
+    }
+}
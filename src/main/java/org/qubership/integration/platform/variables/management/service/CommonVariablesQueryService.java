@@ -0,0 +1,104 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
+import org.qubership.integration.platform.variables.management.rest.exception.MalformedCursorException;
+import org.qubership.integration.platform.variables.management.rest.v2.dto.variables.CommonVariablesPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Server-side paging over common variables. The sorted index is rebuilt only when the variables change,
+ * with the in-memory snapshot a page costs as much as its size.
+ */
+@Slf4j
+@Service
+public class CommonVariablesQueryService {
+    private final CommonVariablesService commonVariablesService;
+
+    private volatile CommonVariablesSortedIndex sortedIndex;
+
+    @Autowired
+    public CommonVariablesQueryService(CommonVariablesService commonVariablesService) {
+        this.commonVariablesService = commonVariablesService;
+    }
+
+    /**
+     * @param cursor    from the previous page, null for the first page
+     * @param prefix    name prefix filter
+     * @param contains  case-insensitive name substring filter
+     * @param namesOnly values are not returned
+     */
+    public CommonVariablesPage getVariablesPage(int limit, @Nullable String cursor, boolean ascending,
+                                                @Nullable String prefix, @Nullable String contains,
+                                                boolean namesOnly) {
+        CommonVariablesSortedIndex index = getSortedIndex();
+        CommonVariablesSortedIndex.Page page = index.page(limit, decodeCursor(cursor), ascending, prefix, contains);
+
+        CommonVariablesPage.CommonVariablesPageBuilder<?, ?> builder = CommonVariablesPage.builder()
+                .index(index.getIndex())
+                .names(page.names())
+                .total(page.total());
+        if (!namesOnly) {
+            Map<String, String> variables = new LinkedHashMap<>();
+            page.names().forEach(name -> variables.put(name, index.getVariables().get(name)));
+            builder.variables(variables);
+        }
+        if (page.hasMore()) {
+            builder.nextCursor(encodeCursor(page.lastName()));
+        }
+        return builder.build();
+    }
+
+    private CommonVariablesSortedIndex getSortedIndex() {
+        Pair<Long, Map<String, String>> current = commonVariablesService.getVariablesWithVersion();
+        CommonVariablesSortedIndex index = sortedIndex;
+        if (index != null && current.getLeft() > 0 && index.getIndex() == current.getLeft()) {
+            return index;
+        }
+
+        index = new CommonVariablesSortedIndex(current.getLeft(), current.getRight());
+        if (current.getLeft() > 0) {
+            sortedIndex = index;
+        }
+        return index;
+    }
+
+    // Cursor is the last name of the previous page, so pages stay consistent while variables change
+    static String encodeCursor(String name) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static @Nullable String decodeCursor(@Nullable String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new MalformedCursorException(cursor);
+        }
+    }
+}
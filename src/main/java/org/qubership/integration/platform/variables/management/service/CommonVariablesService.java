@@ -19,11 +19,16 @@ package org.qubership.integration.platform.variables.management.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.qubership.integration.platform.variables.management.consul.CommonVariablesDelta;
+import org.qubership.integration.platform.variables.management.consul.ConsulReadMode;
 import org.qubership.integration.platform.variables.management.consul.ConsulService;
+import org.qubership.integration.platform.variables.management.consul.TxnConflictException;
 import org.qubership.integration.platform.variables.management.model.exportimport.instructions.PerformInstructionsResult;
 import org.qubership.integration.platform.variables.management.persistence.configs.entity.actionlog.ActionLog;
 import org.qubership.integration.platform.variables.management.persistence.configs.entity.actionlog.EntityType;
 import org.qubership.integration.platform.variables.management.persistence.configs.entity.actionlog.LogOperation;
+import org.qubership.integration.platform.variables.management.rest.exception.CommonVariableVersionMismatchException;
 import org.qubership.integration.platform.variables.management.rest.exception.EmptyVariableFieldException;
 import org.qubership.integration.platform.variables.management.rest.exception.MalformedVariableNameException;
 import org.qubership.integration.platform.variables.management.rest.v1.dto.variables.ImportVariableDTO;
@@ -33,6 +38,8 @@ import org.qubership.integration.platform.variables.management.rest.v1.dto.varia
 import org.qubership.integration.platform.variables.management.rest.v2.dto.variables.ImportVariablesResult;
 import org.qubership.integration.platform.variables.management.service.exportimport.instructions.ImportInstructionsService;
 import org.qubership.integration.platform.variables.management.util.ExportImportUtils;
+import org.qubership.integration.platform.variables.management.util.SingleFlight;
+import jakarta.annotation.PreDestroy;
 import jakarta.persistence.EntityExistsException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FilenameUtils;
@@ -40,6 +47,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.multipart.MultipartFile;
@@ -52,6 +62,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.FileTime;
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -72,6 +83,10 @@ public class CommonVariablesService {
     private static final String YAML_EXTENSION = "yaml";
     private static final String YML_EXTENSION = "yml";
     private static final String[] NON_EXPORTABLE_VARIABLES = DEFAULT_VARIABLES_LIST;
+    /**
+     * Expected version of a variable that must exist, any version matches ({@code If-Match: *})
+     */
+    public static final long ANY_EXISTING_VERSION = -1;
     private static final String EMPTY_COMMON_VARIABLE_NAME_ERROR_MESSAGE = "Common variable's name is empty";
 
     private final ActionsLogService actionLogger;
@@ -79,6 +94,8 @@ public class CommonVariablesService {
     private final SecuredVariableService securedVariableService;
     private final ConsulService consulService;
     private final ImportInstructionsService importInstructionsService;
+    private final RetryTemplate casRetryTemplate;
+    private final SingleFlight<Pair<Long, Map<String, String>>> allVariablesFlight;
 
     @Autowired
     public CommonVariablesService(
@@ -86,45 +103,161 @@ public class CommonVariablesService {
             @Qualifier("yamlImportExportMapper") YAMLMapper yamlImportExportMapper,
             SecuredVariableService securedVariableService,
             ConsulService consulService,
-            ImportInstructionsService importInstructionsService
+            ImportInstructionsService importInstructionsService,
+            @Value("${consul.cas.max-attempts}") int casMaxAttempts,
+            @Value("${consul.cas.backoff}") long casBackoff,
+            @Value("${qip.read-collapsing.stale-while-revalidate}") Duration staleWhileRevalidate,
+            MeterRegistry meterRegistry
     ) {
         this.actionLogger = actionLogger;
         this.yamlMapper = yamlImportExportMapper;
         this.securedVariableService = securedVariableService;
         this.consulService = consulService;
         this.importInstructionsService = importInstructionsService;
+        // Only concurrent modifications are retried, with jitter so that competing replicas diverge
+        this.casRetryTemplate = RetryTemplate.builder()
+                .maxAttempts(casMaxAttempts)
+                .exponentialBackoff(casBackoff, 2, casBackoff * 16, true)
+                .retryOn(TxnConflictException.class)
+                .build();
+        this.allVariablesFlight = new SingleFlight<>("common-variables", consulService::getAllCommonVariablesWithIndex,
+                consulService::getCommonVariablesLocalVersion, staleWhileRevalidate, meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        allVariablesFlight.shutdown();
     }
 
     public Map<String, String> getVariables() {
         return consulService.getAllCommonVariables();
     }
 
+    /**
+     * Concurrent calls share a single consul read, the result must not be modified
+     * @return consul index of common variables, changes with any change of them, and the variables
+     */
+    public Pair<Long, Map<String, String>> getVariablesWithVersion() {
+        return allVariablesFlight.get();
+    }
+
+    /**
+     * Read consistently, the names are used to validate writes
+     */
+    public Set<String> getVariablesNames() {
+        return consulService.getAllCommonVariablesNames(ConsulReadMode.DEFAULT);
+    }
+
+    /**
+     * @param since consul index of the last sync, 0 for the initial one
+     */
+    public CommonVariablesDelta getVariablesDelta(long since) {
+        return consulService.getCommonVariablesDelta(since);
+    }
+
     public String addVariable(String key, String value) {
+        addVariable(key, value, null);
+        return key;
+    }
+
+    /**
+     * Check-and-set write of a single variable, concurrent modifications are detected by the consul ModifyIndex
+     * @param expectedVersion version the variable must have (If-Match), 0 - the variable must not exist,
+     *                        {@link CommonVariablesService#ANY_EXISTING_VERSION} - the variable must exist,
+     *                        null - no precondition, the write is retried on concurrent modification
+     * @return version of the variable after the write
+     * @throws CommonVariableVersionMismatchException if the variable version doesn't match the expected one
+     */
+    public long addVariable(String key, String value, @Nullable Long expectedVersion) {
 
         if (!VARIABLE_NAME_PATTERN_PREDICATE.test(key)) {
             throw new MalformedVariableNameException(key);
         }
 
         Set<String> securedVariablesNames = securedVariableService.getVariablesForDefaultSecret(false);
-        ImportVariableDTO commonVariable = checkAndMapVariable(key, value, securedVariablesNames, false);
-        consulService.updateCommonVariable(key, value);
-        return commonVariable.getName();
+        return casRetryTemplate.execute(context -> {
+            Pair<String, Long> oldVar = consulService.getCommonVariableWithIndex(key);
+            long currentVersion = oldVar == null ? 0 : oldVar.getValue();
+            boolean versionMatches = expectedVersion == null
+                    || (expectedVersion == ANY_EXISTING_VERSION ? currentVersion > 0 : expectedVersion == currentVersion);
+            if (!versionMatches) {
+                throw new CommonVariableVersionMismatchException(key);
+            }
+
+            ImportVariableDTO commonVariable = checkAndMapVariable(key, value,
+                    oldVar == null ? Collections.emptyMap() : Collections.singletonMap(key, oldVar.getKey()),
+                    securedVariablesNames);
+            if (commonVariable.getStatus() == ImportVariableStatus.UNCHANGED) {
+                // Not written, but logged like any requested write
+                logCommonVariableWrite(commonVariable, false);
+                return currentVersion;
+            }
+
+            long version;
+            try {
+                version = consulService.updateCommonVariable(key, value, currentVersion);
+            } catch (TxnConflictException e) {
+                // Any version still matches after a concurrent update, the retry checks the variable still exists
+                if (expectedVersion != null && expectedVersion != ANY_EXISTING_VERSION) {
+                    throw new CommonVariableVersionMismatchException(key, e);
+                }
+                throw e;
+            }
+            logCommonVariableWrite(commonVariable, false);
+            return version;
+        });
     }
 
+    /**
+     * Variables are written with check-and-set against the versions read along with the current values,
+     * the whole read-compare-write is retried on concurrent modification
+     */
     public List<ImportVariableDTO> addVariables(Map<String, String> variables, boolean importMode) {
-        List<ImportVariableDTO> importDTOs = Collections.emptyList();
-        if (!variables.isEmpty()) {
-            Set<String> securedVariablesNames = securedVariableService.getVariablesForDefaultSecret(false);
+        if (variables.isEmpty()) {
+            return Collections.emptyList();
+        }
 
-            importDTOs = variables.entrySet().stream()
-                    .map(entry -> checkAndMapVariable(entry.getKey(), entry.getValue(), securedVariablesNames, importMode))
+        Set<String> securedVariablesNames = securedVariableService.getVariablesForDefaultSecret(false);
+        // Statuses of the previous attempts, variables written by an applied txn batch are unchanged on retry
+        Map<String, ImportVariableStatus> attemptedStatuses = new HashMap<>();
+        List<ImportVariableDTO> importDTOs = casRetryTemplate.execute(context -> {
+            // Single recursive read instead of a read per variable, statuses are computed in memory
+            Pair<Map<String, String>, Map<String, Long>> currentVariables = consulService.getAllCommonVariablesWithIndexes();
+
+            List<ImportVariableDTO> dtos = variables.entrySet().stream()
+                    .map(entry -> checkAndMapVariable(entry.getKey(), entry.getValue(),
+                            currentVariables.getLeft(), securedVariablesNames))
                     .toList();
-            consulService.updateCommonVariables(variables);
-        }
+
+            // Only created and changed variables are written, so repeated imports don't touch consul
+            Map<String, String> changedVariables = new HashMap<>();
+            dtos.stream()
+                    .filter(variable -> variable.getStatus() != ImportVariableStatus.UNCHANGED)
+                    .forEach(variable -> {
+                        changedVariables.put(variable.getName(), variable.getValue());
+                        attemptedStatuses.putIfAbsent(variable.getName(), variable.getStatus());
+                    });
+            if (!changedVariables.isEmpty()) {
+                consulService.updateCommonVariables(changedVariables, currentVariables.getRight());
+            }
+            return dtos;
+        });
+
+        importDTOs.forEach(variable -> {
+            if (variable.getStatus() == ImportVariableStatus.UNCHANGED && attemptedStatuses.containsKey(variable.getName())) {
+                variable.setStatus(attemptedStatuses.get(variable.getName()));
+            }
+            // Every requested variable is logged, unchanged ones too, same as secured variables
+            logCommonVariableWrite(variable, importMode);
+        });
         return importDTOs;
     }
 
-    private ImportVariableDTO checkAndMapVariable(String key, String value, Set<String> securedVariablesNames, boolean importMode) {
+    /**
+     * @param currentVariables stored variables to compute the status against, must contain the variable if it exists
+     */
+    private ImportVariableDTO checkAndMapVariable(String key, String value, Map<String, String> currentVariables,
+                                                  Set<String> securedVariablesNames) {
         if (securedVariablesNames.contains(key)) {
             throw new EntityExistsException("Secured variable with name " + key + " already exists");
         }
@@ -139,15 +272,22 @@ public class CommonVariablesService {
 
         ImportVariableDTO variable = new ImportVariableDTO(key, value);
 
-        Pair<String, String> oldVar = consulService.getCommonVariable(key);
-        boolean exists = oldVar != null;
-        variable.setStatus(exists ? ImportVariableStatus.UPDATED : ImportVariableStatus.CREATED);
-        LogOperation operation = importMode ? LogOperation.IMPORT : exists ? LogOperation.UPDATE : LogOperation.CREATE;
-        logCommonVariableAction(key, operation);
-
+        boolean exists = currentVariables.containsKey(key);
+        if (exists && StringUtils.defaultString(value).equals(currentVariables.get(key))) {
+            variable.setStatus(ImportVariableStatus.UNCHANGED);
+        } else {
+            variable.setStatus(exists ? ImportVariableStatus.UPDATED : ImportVariableStatus.CREATED);
+        }
         return variable;
     }
 
+    private void logCommonVariableWrite(ImportVariableDTO variable, boolean importMode) {
+        LogOperation operation = importMode
+                ? LogOperation.IMPORT
+                : variable.getStatus() == ImportVariableStatus.CREATED ? LogOperation.CREATE : LogOperation.UPDATE;
+        logCommonVariableAction(variable.getName(), operation);
+    }
+
     public void addVariablesUnlogged(Map<String, String> variables) {
         consulService.updateCommonVariables(variables);
     }
@@ -157,12 +297,16 @@ public class CommonVariablesService {
         variablesNames.forEach(name -> logCommonVariableAction(name, LogOperation.DELETE));
     }
 
-    public VariablesFileResponse exportVariables(List<String> variablesNames, boolean asArchive) {
-        Map<String, String> variablesForExport = CollectionUtils.isEmpty(variablesNames) ?
-                consulService.getAllCommonVariables() :
-                consulService.getCommonVariables(variablesNames);
-
-        variablesForExport = variablesForExport.entrySet().stream()
+    /**
+     * @param variables      all common variables, the export is taken from them rather than read again,
+     *                       so the file matches the version they were read at
+     * @param variablesNames names to export, all variables if empty, names missing from the variables are skipped
+     */
+    public VariablesFileResponse exportVariables(Map<String, String> variables, List<String> variablesNames,
+                                                 boolean asArchive) {
+        Set<String> names = CollectionUtils.isEmpty(variablesNames) ? null : new HashSet<>(variablesNames);
+        Map<String, String> variablesForExport = variables.entrySet().stream()
+                .filter(variable -> names == null || names.contains(variable.getKey()))
                 .filter(name -> Arrays.stream(NON_EXPORTABLE_VARIABLES)
                         .noneMatch(excludedName -> excludedName.equals(name.getKey())))
                 .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.service;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable sorted array of common variables names over a snapshot of the variables.
+ * Prefix ranges and cursor positions are found by binary search,
+ * so a page costs O(log n + page size) unless filtered by substring.
+ */
+public final class CommonVariablesSortedIndex {
+
+    public record Page(List<String> names, @Nullable String lastName, boolean hasMore, @Nullable Integer total) {
+    }
+
+    private final long index;
+    private final Map<String, String> variables;
+    private final String[] names;
+
+    public CommonVariablesSortedIndex(long index, Map<String, String> variables) {
+        this.index = index;
+        this.variables = variables;
+        this.names = variables.keySet().toArray(new String[0]);
+        Arrays.sort(this.names);
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public Map<String, String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * @param after     page starts after this name in the sort order, null for the first page
+     * @param ascending sort order by name
+     * @param prefix    name prefix filter
+     * @param contains  case-insensitive name substring filter
+     */
+    public Page page(int limit, @Nullable String after, boolean ascending,
+                     @Nullable String prefix, @Nullable String contains) {
+        int from = 0;
+        int to = names.length;
+        if (StringUtils.isNotEmpty(prefix)) {
+            from = lowerBound(prefix, 0, names.length);
+            to = prefixEnd(prefix, from);
+        }
+        Integer total = StringUtils.isEmpty(contains) ? to - from : null;
+
+        List<String> page = new ArrayList<>(Math.min(limit, to - from));
+        boolean hasMore = false;
+        if (ascending) {
+            int i = after == null ? from : Math.max(from, upperBound(after, from, to));
+            for (; i < to; i++) {
+                if (matches(names[i], contains)) {
+                    if (page.size() == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    page.add(names[i]);
+                }
+            }
+        } else {
+            int i = after == null ? to - 1 : Math.min(to, lowerBound(after, from, to)) - 1;
+            for (; i >= from; i--) {
+                if (matches(names[i], contains)) {
+                    if (page.size() == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    page.add(names[i]);
+                }
+            }
+        }
+        String lastName = page.isEmpty() ? null : page.get(page.size() - 1);
+        return new Page(page, lastName, hasMore, total);
+    }
+
+    private static boolean matches(String name, @Nullable String contains) {
+        return StringUtils.isEmpty(contains) || StringUtils.containsIgnoreCase(name, contains);
+    }
+
+    // First position in [from, to) with a name >= key
+    private int lowerBound(String key, int from, int to) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (names[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First position in [from, to) with a name > key
+    private int upperBound(String key, int from, int to) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (names[mid].compareTo(key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Names with the prefix are contiguous starting from the lower bound of the prefix
+    private int prefixEnd(String prefix, int from) {
+        int low = from;
+        int high = names.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (names[mid].startsWith(prefix)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
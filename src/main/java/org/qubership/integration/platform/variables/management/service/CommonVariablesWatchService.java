@@ -0,0 +1,241 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.qubership.integration.platform.variables.management.consul.CommonVariableChange;
+import org.qubership.integration.platform.variables.management.consul.CommonVariablesChangeFeed;
+import org.qubership.integration.platform.variables.management.consul.CommonVariablesChanges;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Delivers common variables changes to clients by long polling or server-sent events.
+ * Each SSE client has its own bounded queue drained by a sender thread, so a slow client doesn't delay the others;
+ * the stream of a client falling behind the queue or stuck in a send is closed, the client reconnects with Last-Event-ID.
+ */
+@Slf4j
+@Service
+public class CommonVariablesWatchService {
+    public static final String CHANGE_EVENT = "change";
+    public static final String RESYNC_EVENT = "resync";
+
+    private final CommonVariablesChangeFeed changeFeed;
+    private final long maxWait;
+    private final long sseTimeout;
+    private final int queueCapacity;
+    private final long sendTimeout;
+    // At most one thread per subscription with pending events
+    private final ExecutorService sender;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public CommonVariablesWatchService(CommonVariablesChangeFeed changeFeed,
+                                       @Value("${consul.watch.long-poll.max-wait}") long maxWait,
+                                       @Value("${consul.watch.sse.timeout}") long sseTimeout,
+                                       @Value("${consul.watch.sse.queue-capacity}") int queueCapacity,
+                                       @Value("${consul.watch.sse.send-timeout}") Duration sendTimeout) {
+        this.changeFeed = changeFeed;
+        this.maxWait = maxWait;
+        this.sseTimeout = sseTimeout;
+        this.queueCapacity = queueCapacity;
+        this.sendTimeout = sendTimeout.toMillis();
+        this.sender = Executors.newCachedThreadPool(new BasicThreadFactory.Builder()
+                .namingPattern("common-variables-sse-%d")
+                .daemon(true)
+                .build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    /**
+     * @param index last index known to the client, 0 - the client has no state and gets a resync
+     * @param wait  max time to wait for changes in ms, limited by the configured maximum
+     * @return changes after the index, or no changes and the same index if nothing changed in time
+     */
+    public DeferredResult<CommonVariablesChanges> watch(long index, @Nullable Long wait) {
+        long timeout = wait == null || wait <= 0 ? maxWait : Math.min(wait, maxWait);
+        CommonVariablesChanges noChanges = new CommonVariablesChanges(index, false, Collections.emptyList());
+        DeferredResult<CommonVariablesChanges> result = new DeferredResult<>(timeout, () -> noChanges);
+
+        CompletableFuture<CommonVariablesChanges> changes = changeFeed.awaitChanges(index);
+        changes.thenAccept(result::setResult);
+        result.onCompletion(() -> changes.cancel(false));
+        return result;
+    }
+
+    /**
+     * @param fromIndex last index known to the client, changes after it are replayed first.
+     *                  If null, only the new changes are sent.
+     */
+    public SseEmitter subscribe(@Nullable Long fromIndex) {
+        SseEmitter emitter = new SseEmitter(sseTimeout);
+        Subscription subscription = new Subscription(emitter);
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(error -> subscription.close());
+        subscription.start(fromIndex);
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${consul.watch.sse.heartbeat-interval}")
+    public void sendHeartbeats() {
+        // Keeps idle streams from being closed by proxies and detects gone clients
+        subscriptions.forEach(Subscription::heartbeat);
+    }
+
+    private class Subscription implements Consumer<CommonVariablesChanges> {
+        private final SseEmitter emitter;
+        // Guarded by this
+        private final Deque<SseEmitter.SseEventBuilder> pending = new ArrayDeque<>();
+        private Runnable unsubscribe;
+        private long lastIndex;
+        private boolean closed;
+        private boolean sending;
+        private long sendStartTime;
+
+        Subscription(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        synchronized void start(@Nullable Long fromIndex) {
+            // Subscribe before reading the log so no changes are missed, duplicates are skipped by index
+            subscriptions.add(this);
+            unsubscribe = changeFeed.subscribe(this);
+            if (fromIndex == null) {
+                lastIndex = changeFeed.getCurrentIndex();
+            } else {
+                lastIndex = fromIndex;
+                accept(changeFeed.changesSince(fromIndex));
+            }
+        }
+
+        @Override
+        public synchronized void accept(CommonVariablesChanges changes) {
+            if (closed) {
+                return;
+            }
+            List<SseEmitter.SseEventBuilder> events = new ArrayList<>();
+            if (changes.resync()) {
+                events.add(SseEmitter.event()
+                        .id(String.valueOf(changes.index()))
+                        .name(RESYNC_EVENT)
+                        .data(changes, MediaType.APPLICATION_JSON));
+            } else {
+                for (CommonVariableChange change : changes.changes()) {
+                    if (change.index() > lastIndex) {
+                        events.add(SseEmitter.event()
+                                .id(String.valueOf(change.index()))
+                                .name(CHANGE_EVENT)
+                                .data(change, MediaType.APPLICATION_JSON));
+                    }
+                }
+            }
+            // After a resync the index may go backwards, consul index reset
+            lastIndex = changes.resync() ? changes.index() : Math.max(lastIndex, changes.index());
+            enqueue(events);
+        }
+
+        synchronized void heartbeat() {
+            if (closed) {
+                return;
+            }
+            if (sending && System.currentTimeMillis() - sendStartTime > sendTimeout) {
+                abort("send takes longer than " + sendTimeout + " ms");
+            } else if (!sending) {
+                enqueue(List.of(SseEmitter.event().comment("heartbeat")));
+            }
+        }
+
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.clear();
+            subscriptions.remove(this);
+            if (unsubscribe != null) {
+                unsubscribe.run();
+            }
+        }
+
+        // Guarded by this
+        private void enqueue(List<SseEmitter.SseEventBuilder> events) {
+            if (events.isEmpty()) {
+                return;
+            }
+            if (pending.size() + events.size() > queueCapacity) {
+                abort("more than " + queueCapacity + " events pending");
+                return;
+            }
+            pending.addAll(events);
+            if (!sending) {
+                sending = true;
+                sender.execute(this::drain);
+            }
+        }
+
+        // Guarded by this. The emitter may be blocked in a send, so it is completed by the sender
+        private void abort(String reason) {
+            log.debug("Common variables changes stream of a slow client closed, {}", reason);
+            close();
+            sender.execute(emitter::complete);
+        }
+
+        private void drain() {
+            while (true) {
+                SseEmitter.SseEventBuilder event;
+                synchronized (this) {
+                    event = closed ? null : pending.poll();
+                    if (event == null) {
+                        sending = false;
+                        return;
+                    }
+                    sendStartTime = System.currentTimeMillis();
+                }
+                try {
+                    emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("Common variables changes stream closed: {}", e.getMessage());
+                    emitter.completeWithError(e);
+                    close();
+                    return;
+                }
+            }
+        }
+    }
+}
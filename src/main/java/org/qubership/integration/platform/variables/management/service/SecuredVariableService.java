@@ -19,6 +19,8 @@ package org.qubership.integration.platform.variables.management.service;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import jakarta.persistence.EntityExistsException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
@@ -28,7 +30,11 @@ import org.qubership.integration.platform.variables.management.kubernetes.KubeAp
 import org.qubership.integration.platform.variables.management.kubernetes.KubeApiNotFoundException;
 import org.qubership.integration.platform.variables.management.kubernetes.KubeOperator;
 import org.qubership.integration.platform.variables.management.kubernetes.SecretUpdateCallback;
+import org.qubership.integration.platform.variables.management.kubernetes.SecretWriteCombiner;
+import org.qubership.integration.platform.variables.management.kubernetes.SecretWriteCombiner.SecretPatch;
+import org.qubership.integration.platform.variables.management.kubernetes.VariablesSecretsInformer;
 import org.qubership.integration.platform.variables.management.model.SecretEntity;
+import org.qubership.integration.platform.variables.management.model.json.JsonPatch;
 import org.qubership.integration.platform.variables.management.persistence.configs.entity.actionlog.ActionLog;
 import org.qubership.integration.platform.variables.management.persistence.configs.entity.actionlog.EntityType;
 import org.qubership.integration.platform.variables.management.persistence.configs.entity.actionlog.LogOperation;
@@ -37,6 +43,7 @@ import org.qubership.integration.platform.variables.management.rest.exception.Se
 import org.qubership.integration.platform.variables.management.rest.exception.SecuredVariablesNotFoundException;
 import org.qubership.integration.platform.variables.management.rest.v2.dto.variables.SecretErrorResponse;
 import org.qubership.integration.platform.variables.management.util.DevModeUtil;
+import org.qubership.integration.platform.variables.management.util.SingleFlight;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -46,11 +53,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
@@ -64,10 +73,16 @@ public class SecuredVariableService extends SecretService {
     public static final String EMPTY_SECURED_VARIABLE_NAME_ERROR_MESSAGE = "Secured variable's name is empty";
 
     private final CommonVariablesService commonVariablesService;
-    private final Lock lock;
+    // Operations on different secrets don't block each other, reads take no lock
+    private final ConcurrentMap<String, ReentrantLock> secretLocks = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, SecretEntity> securedVariablesSecrets = new ConcurrentHashMap<>();
     private final ObjectMapper objectMapperWithSorting;
     private final DevModeUtil devModeUtil;
+    private final VariablesSecretsInformer secretsInformer;
+    // Changes with every write to the secrets by this instance
+    private final AtomicLong localWrites = new AtomicLong();
+    private final SingleFlight<Map<String, Set<String>>> allSecretsFlight;
+    private final SecretWriteCombiner writeCombiner;
 
     @Autowired
     public SecuredVariableService(
@@ -79,23 +94,49 @@ public class SecuredVariableService extends SecretService {
             @Value("${kubernetes.variables-secret.name}") String kubeSecretV2Name,
             DevModeUtil devModeUtil,
             @Lazy CommonVariablesService commonVariablesService,
-            @Qualifier("objectMapperWithSorting") ObjectMapper objectMapperWithSorting
+            @Qualifier("objectMapperWithSorting") ObjectMapper objectMapperWithSorting,
+            VariablesSecretsInformer secretsInformer,
+            @Value("${qip.read-collapsing.stale-while-revalidate}") Duration staleWhileRevalidate,
+            @Value("${kubernetes.variables-secret.write-combining.enabled}") boolean writeCombiningEnabled,
+            @Value("${kubernetes.variables-secret.write-combining.max-batch}") int writeCombiningMaxBatch,
+            @Value("${kubernetes.variables-secret.write-combining.parallelism}") int writeCombiningParallelism,
+            MeterRegistry meterRegistry
     ) {
         super(yamlMapper, objectMapper, operator, actionLogger, kubeSecretsLabel, kubeSecretV2Name);
         this.commonVariablesService = commonVariablesService;
-        this.lock = new ReentrantLock(true);
         this.objectMapperWithSorting = objectMapperWithSorting;
         this.devModeUtil = devModeUtil;
+        this.secretsInformer = secretsInformer;
+        this.allSecretsFlight = new SingleFlight<>("secured-variables", this::loadAllSecretsVariablesNames,
+                localWrites::get, staleWhileRevalidate, meterRegistry);
+        this.writeCombiner = new SecretWriteCombiner(operator, this::readSecretForWrite, this::updateVariablesCache,
+                this::getSecretLock, writeCombiningEnabled, writeCombiningMaxBatch,
+                writeCombiningParallelism, meterRegistry);
     }
 
+    @PreDestroy
+    public void shutdown() {
+        allSecretsFlight.shutdown();
+        writeCombiner.shutdown();
+    }
+
+    /**
+     * Concurrent calls share a single kubernetes list call, the result must not be modified
+     */
     public Map<String, Set<String>> getAllSecretsVariablesNames() {
-        lock.lock();
+        return allSecretsFlight.get();
+    }
+
+    private Map<String, Set<String>> loadAllSecretsVariablesNames() {
+        return Collections.unmodifiableMap(getAllSecretsKeys());
+    }
+
+    @Override
+    public void createSecuredVariablesSecret(String name, @Nullable Map<String, String> securedVariables) {
         try {
-            refreshAllVariablesSecrets();
-            return getVariablesBySecret().entrySet().stream()
-                    .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().keySet()));
+            super.createSecuredVariablesSecret(name, securedVariables);
         } finally {
-            lock.unlock();
+            localWrites.incrementAndGet();
         }
     }
 
@@ -106,22 +147,27 @@ public class SecuredVariableService extends SecretService {
     public Set<String> getVariablesForSecret(String secretName, boolean failIfSecretNotExist) {
         secretName = resolveSecretName(secretName);
 
-        lock.lock();
-        try {
-            refreshVariablesForSecret(secretName, failIfSecretNotExist);
+        // Names only, the values are never converted to strings
+        Optional<Set<String>> cachedKeys = secretsInformer.getSecretKeys(secretName);
+        if (cachedKeys.isPresent()) {
+            return cachedKeys.get();
+        }
 
+        try {
+            return operator.getSecretKeysByName(secretName, failIfSecretNotExist);
+        } catch (KubeApiNotFoundException e) {
+            log.error("Cannot get secured variables from secret", e);
+            throw new SecuredVariablesNotFoundException(SECRET_NOT_FOUND_ERROR_MESSAGE_FORMAT.formatted(secretName), e);
+        } catch (KubeApiException e) {
+            log.error("Can't get kube secret: {}", e.getMessage());
+            if (!devModeUtil.isDevMode()) {
+                throw e;
+            }
             SecretEntity secret = securedVariablesSecrets.get(secretName);
-            if (secret == null) {
-                if (failIfSecretNotExist) {
-                    throw new SecuredVariablesNotFoundException(SECRET_NOT_FOUND_ERROR_MESSAGE_FORMAT.formatted(secretName));
-                } else {
-                    return Collections.emptySet();
-                }
+            if (secret == null && failIfSecretNotExist) {
+                throw new SecuredVariablesNotFoundException(SECRET_NOT_FOUND_ERROR_MESSAGE_FORMAT.formatted(secretName));
             }
-
-            return secret.getVariables().keySet();
-        } finally {
-            lock.unlock();
+            return secret == null ? Collections.emptySet() : secret.getVariables().keySet();
         }
     }
 
@@ -138,38 +184,41 @@ public class SecuredVariableService extends SecretService {
             return Collections.singletonMap(secretName, Collections.emptySet());
         }
 
-        Map<String, String> oldVariablesCopy;
+        secretName = resolveSecretName(secretName);
+        for (Map.Entry<String, String> securedVariable : newVariables.entrySet()) {
+            validateSecuredVariable(securedVariable.getKey(), securedVariable.getValue());
+        }
+        // Read before the write, so the secret is not locked during the call
+        Set<String> commonVariablesNames = isDefaultSecret(secretName)
+                ? commonVariablesService.getVariablesNames()
+                : Collections.emptySet();
 
-        lock.lock();
+        Set<String> existed;
         try {
-            secretName = resolveSecretName(secretName);
-
-            refreshVariablesForSecret(secretName, true);
-            SecretEntity secret = securedVariablesSecrets.get(secretName);
-            if (secret == null) {
-                throw new SecuredVariablesNotFoundException(SECRET_NOT_FOUND_ERROR_MESSAGE_FORMAT.formatted(secretName));
-            }
-
-            ConcurrentMap<String, String> variables = new ConcurrentHashMap<>(secret.getVariables());
-            oldVariablesCopy = new HashMap<>(variables);
-
-            if (isDefaultSecret(secretName)) {
-                validateSecuredVariablesUniqueness(variables, newVariables);
-            }
-
-            for (Map.Entry<String, String> securedVariable : newVariables.entrySet()) {
-                validateSecuredVariable(securedVariable.getKey(), securedVariable.getValue());
-            }
-
-            updateVariablesCache(secretName, operator.addSecretData(secretName, newVariables, variables.isEmpty()));
+            existed = writeCombiner.write(secretName, variables -> {
+                validateSecuredVariablesUniqueness(commonVariablesNames, variables, newVariables);
+
+                // Compared with the secret just read from the api server under the lock, not with the informer copy.
+                // Variables with the same value are left out of the patch, the secret is not written at all if none changed
+                Map<String, String> changedVariables = getChangedVariables(variables, newVariables);
+                List<JsonPatch> patches = changedVariables.isEmpty()
+                        ? Collections.emptyList()
+                        : KubeOperator.getAddDataPatches(changedVariables, variables.isEmpty());
+                // Every requested variable is logged, unchanged ones too, same as common variables
+                Set<String> existedVariables = newVariables.keySet().stream()
+                        .filter(variables::containsKey)
+                        .collect(Collectors.toSet());
+                variables.putAll(changedVariables);
+                return new SecretPatch<>(patches, existedVariables);
+            });
         } finally {
-            lock.unlock();
+            localWrites.incrementAndGet();
         }
 
         for (String name : newVariables.keySet()) {
             logSecuredVariableAction(name, secretName, importMode ?
                     LogOperation.IMPORT :
-                    (oldVariablesCopy.containsKey(name) ? LogOperation.UPDATE : LogOperation.CREATE));
+                    (existed.contains(name) ? LogOperation.UPDATE : LogOperation.CREATE));
         }
 
         return Collections.singletonMap(secretName, newVariables.keySet());
@@ -189,17 +238,13 @@ public class SecuredVariableService extends SecretService {
             return;
         }
 
-        lock.lock();
         try {
-            refreshVariablesForSecret(secretName, true);
-            SecretEntity secret = securedVariablesSecrets.get(secretName);
-            if (secret == null) {
-                throw new SecuredVariablesNotFoundException(SECRET_NOT_FOUND_ERROR_MESSAGE_FORMAT.formatted(secretName));
-            }
-
-            updateVariablesCache(secretName, operator.removeSecretData(secretName, variablesNames));
+            writeCombiner.write(secretName, variables -> {
+                variables.keySet().removeAll(variablesNames);
+                return new SecretPatch<>(KubeOperator.getRemoveDataPatches(variablesNames), null);
+            });
         } finally {
-            lock.unlock();
+            localWrites.incrementAndGet();
         }
 
         if (logOperation) {
@@ -210,16 +255,22 @@ public class SecuredVariableService extends SecretService {
 
     public List<SecretErrorResponse> deleteVariablesForMultipleSecrets(Map<String, Set<String>> variablesPerSecret) {
         List<CompletableFuture<Map<String, String>>> secretUpdateFutures = new ArrayList<>();
-        Map<String, Throwable> secretUpdateExceptions = new HashMap<>();
-
-        lock.lock();
+        Map<String, Throwable> secretUpdateExceptions = new ConcurrentHashMap<>();
+
+        // Locks are taken in the order of the names, so concurrent multi-secret operations can't deadlock
+        List<Lock> locks = variablesPerSecret.keySet().stream()
+                .map(this::resolveSecretName)
+                .sorted()
+                .distinct()
+                .map(this::getSecretLock)
+                .toList();
+        locks.forEach(Lock::lock);
         try {
-            refreshAllVariablesSecrets();
+            Map<String, Set<String>> existingSecrets = getAllSecretsKeys();
             for (Map.Entry<String, Set<String>> variablePerSecret : variablesPerSecret.entrySet()) {
                 String secretName = resolveSecretName(variablePerSecret.getKey());
                 Set<String> variablesToRemove = variablePerSecret.getValue();
-                SecretEntity secret = securedVariablesSecrets.get(secretName);
-                if (secret == null) {
+                if (!existingSecrets.containsKey(secretName)) {
                     secretUpdateExceptions.put(
                             secretName,
                             new SecuredVariablesNotFoundException(SECRET_NOT_FOUND_ERROR_MESSAGE_FORMAT.formatted(secretName))
@@ -253,7 +304,10 @@ public class SecuredVariableService extends SecretService {
             log.error("Failed to delete variables", e);
             throw new SecuredVariablesException("Failed to delete variables", e);
         } finally {
-            lock.unlock();
+            localWrites.incrementAndGet();
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
         }
 
         variablesPerSecret.entrySet().stream()
@@ -282,30 +336,27 @@ public class SecuredVariableService extends SecretService {
 
     public Pair<String, Set<String>> updateVariables(String secretName, Map<String, String> variablesToUpdate) {
         secretName = resolveSecretName(secretName);
+        Map<String, String> newValues = new HashMap<>();
+        for (Map.Entry<String, String> variable : variablesToUpdate.entrySet()) {
+            validateSecuredVariable(variable.getKey(), variable.getValue());
+            newValues.put(variable.getKey(), isNull(variable.getValue()) ? "" : variable.getValue());
+        }
 
-        lock.lock();
         try {
-            refreshVariablesForSecret(secretName, true);
-
-            ConcurrentMap<String, String> variables = new ConcurrentHashMap<>(
-                    securedVariablesSecrets.get(secretName).getVariables()
-            );
-
-            for (Map.Entry<String, String> variable : variablesToUpdate.entrySet()) {
-                String name = variable.getKey();
-                String value = variable.getValue();
-                validateSecuredVariable(name, value);
-
-                if (!variables.containsKey(name)) {
-                    throw new SecuredVariablesNotFoundException("Cannot find variable " + name);
+            writeCombiner.write(secretName, variables -> {
+                for (String name : newValues.keySet()) {
+                    if (!variables.containsKey(name)) {
+                        throw new SecuredVariablesNotFoundException("Cannot find variable " + name);
+                    }
                 }
 
-                variables.put(name, isNull(value) ? "" : value);
-            }
-
-            updateVariablesCache(secretName, operator.updateSecretData(secretName, variables));
+                // Only the changed keys are replaced, the secret is not written at all if none changed
+                Map<String, String> changedVariables = getChangedVariables(variables, newValues);
+                variables.putAll(changedVariables);
+                return new SecretPatch<>(KubeOperator.getReplaceDataPatches(changedVariables), null);
+            });
         } finally {
-            lock.unlock();
+            localWrites.incrementAndGet();
         }
 
         final String finalSecretName = secretName;
@@ -322,9 +373,8 @@ public class SecuredVariableService extends SecretService {
             log.error("Unable to convert file to variables {}", e.getMessage());
             throw new RuntimeException("Unable to convert file to variables");
         }
+        // Logged as IMPORT by addVariables
         addVariables(getKubeSecretV2Name(), importedVariables, true);
-
-        importedVariables.keySet().forEach(name -> logSecuredVariableAction(name, getKubeSecretV2Name(), LogOperation.IMPORT));
         return importedVariables.keySet();
     }
 
@@ -338,50 +388,55 @@ public class SecuredVariableService extends SecretService {
         }
     }
 
-    private void validateSecuredVariablesUniqueness(Map<String, String> currentVariables, Map<String, String> newVariables) {
-        Map<String, String> commonVariables = commonVariablesService.getVariables();
-        for (Map.Entry<String, String> commonVariable : commonVariables.entrySet()) {
-            String name = commonVariable.getKey();
+    private void validateSecuredVariablesUniqueness(Set<String> commonVariablesNames,
+                                                    Map<String, String> currentVariables,
+                                                    Map<String, String> newVariables) {
+        for (String name : commonVariablesNames) {
             if (currentVariables.containsKey(name) || newVariables.containsKey(name)) {
                 throw new EntityExistsException("Common variable with name " + name + " already exists");
             }
         }
     }
 
-    private ConcurrentMap<String, ConcurrentMap<String, String>> getVariablesBySecret() {
-        ConcurrentMap<String, ConcurrentMap<String, String>> variables = new ConcurrentHashMap<>();
-        for (Map.Entry<String, SecretEntity> entry : securedVariablesSecrets.entrySet()) {
-            variables.put(entry.getKey(), entry.getValue().getVariables());
+    /**
+     * @return key sets of all the secrets with secured variables, the values are never converted to strings
+     */
+    private Map<String, Set<String>> getAllSecretsKeys() {
+        Optional<Map<String, Set<String>>> cachedKeys = secretsInformer.getAllSecretsKeys();
+        if (cachedKeys.isPresent()) {
+            return cachedKeys.get();
         }
 
-        return variables;
-    }
-
-    private void refreshAllVariablesSecrets() {
-        ConcurrentMap<String, ConcurrentMap<String, String>> foundSecrets;
-
         try {
-            foundSecrets = operator.getAllSecretsWithLabel(getKubeSecretsLabel());
+            return operator.getAllSecretsKeysWithLabel(getKubeSecretsLabel());
         } catch (KubeApiException e) {
             log.error("Can't get kube secrets {}", e.getMessage());
             if (!devModeUtil.isDevMode()) {
                 throw e;
             }
-            foundSecrets = new ConcurrentHashMap<>();
+            return Collections.emptyMap();
         }
+    }
 
-        securedVariablesSecrets.clear();
-        for (Map.Entry<String, ConcurrentMap<String, String>> entry : foundSecrets.entrySet()) {
-            String secretName = entry.getKey();
-            ConcurrentMap<String, String> secretData = entry.getValue();
-            updateVariablesCache(secretName, secretData);
+    private Map<String, String> readSecretForWrite(String secretName) {
+        SecretEntity secret = refreshVariablesForSecret(secretName, true);
+        if (secret == null) {
+            throw new SecuredVariablesNotFoundException(SECRET_NOT_FOUND_ERROR_MESSAGE_FORMAT.formatted(secretName));
         }
+        return secret.getVariables();
     }
 
-    private void refreshVariablesForSecret(String secretName, boolean failIfSecretNotExist) {
+    /**
+     * Writers must use the returned state, the cached one may be replaced by a concurrent lock-free read.
+     * Always read from the api server: the informer may lag writes of other instances,
+     * and the patch built from its copy would overwrite or miss their keys
+     * @return state of the secret as read, null if it does not exist
+     */
+    @Nullable
+    private SecretEntity refreshVariablesForSecret(String secretName, boolean failIfSecretNotExist) {
         try {
             ConcurrentMap<String, String> secretData = operator.getSecretByName(secretName, failIfSecretNotExist);
-            updateVariablesCache(secretName, secretData);
+            return updateVariablesCache(secretName, secretData);
         } catch (KubeApiNotFoundException e) {
             log.error("Cannot get secured variables from secret", e);
             securedVariablesSecrets.remove(secretName);
@@ -391,19 +446,38 @@ public class SecuredVariableService extends SecretService {
                         e
                 );
             }
+            return null;
         } catch (KubeApiException e) {
             log.error("Can't get kube secret: {}", e.getMessage());
             if (!devModeUtil.isDevMode()) {
                 throw e;
             }
+            return securedVariablesSecrets.get(secretName);
         }
     }
 
-    private void updateVariablesCache(String secretName, Map<String, String> variables) {
-        securedVariablesSecrets.put(secretName, SecretEntity.builder()
+    private SecretEntity updateVariablesCache(String secretName, Map<String, String> variables) {
+        SecretEntity secret = SecretEntity.builder()
                 .secretName(secretName)
                 .variables(new ConcurrentHashMap<>(variables))
-                .build());
+                .build();
+        securedVariablesSecrets.put(secretName, secret);
+        return secret;
+    }
+
+    private static Map<String, String> getChangedVariables(Map<String, String> currentVariables,
+                                                           Map<String, String> newVariables) {
+        Map<String, String> changedVariables = new HashMap<>();
+        newVariables.forEach((name, value) -> {
+            if (!value.equals(currentVariables.get(name))) {
+                changedVariables.put(name, value);
+            }
+        });
+        return changedVariables;
+    }
+
+    private Lock getSecretLock(String secretName) {
+        return secretLocks.computeIfAbsent(secretName, name -> new ReentrantLock(true));
     }
 
     private String resolveSecretName(@Nullable String secretName) {
@@ -17,6 +17,7 @@
 package org.qubership.integration.platform.variables.management.service.exportimport.instructions;
 
 import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import org.qubership.integration.platform.variables.management.consul.ConsulReadMode;
 import org.qubership.integration.platform.variables.management.consul.ConsulService;
 import org.qubership.integration.platform.variables.management.persistence.configs.entity.actionlog.ActionLog;
 import org.qubership.integration.platform.variables.management.persistence.configs.entity.actionlog.EntityType;
@@ -208,10 +209,10 @@ public class ImportInstructionsService {
             return Collections.emptyList();
         }
 
-        Map<String, String> existingVariables = consulService.getAllCommonVariables();
+        Set<String> existingVariablesNames = consulService.getAllCommonVariablesNames(ConsulReadMode.DEFAULT);
         Set<String> deleteIds = instructionsConfig.getCommonVariables().getDelete();
         List<String> filteredDeleteIds = deleteIds.stream()
-                .filter(existingVariables::containsKey)
+                .filter(existingVariablesNames::contains)
                 .collect(Collectors.toList());
         ImportInstructionExecutionStatus executionStatus;
         String errorMessage = null;
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.qubership.integration.platform.variables.management.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent identical reads into a single upstream call, whose result is shared by all the callers.
+ * The last result is served for the stale-while-revalidate window while a single background call refreshes it.
+ * Results are dropped as soon as the version changes, the version must be bumped by every local write,
+ * so callers always see their own writes. Shared results must not be modified.
+ */
+@Slf4j
+public class SingleFlight<T> {
+    private static final String METRICS_NAME = "qip.read.collapsing.requests";
+
+    private record Result<T>(T value, long version, long loadedAt) {
+    }
+
+    private record Flight<T>(CompletableFuture<T> future, long version) {
+    }
+
+    private final Supplier<T> loader;
+    private final LongSupplier version;
+    private final long staleWhileRevalidate;
+    private final ExecutorService revalidator;
+    private final Counter loaded;
+    private final Counter shared;
+    private final Counter stale;
+
+    private volatile Result<T> last;
+    // Guarded by this
+    private Flight<T> flight;
+
+    /**
+     * @param name used for the metrics tag and the revalidation thread
+     * @param version changes with every local write of the loaded data
+     * @param staleWhileRevalidate how long the last result may be served while it is refreshed, zero - only concurrent calls are collapsed
+     */
+    public SingleFlight(String name, Supplier<T> loader, LongSupplier version, Duration staleWhileRevalidate,
+                        MeterRegistry meterRegistry) {
+        this.loader = loader;
+        this.version = version;
+        this.staleWhileRevalidate = staleWhileRevalidate.toMillis();
+        this.revalidator = Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
+                .namingPattern(name + "-revalidator-%d")
+                .daemon(true)
+                .build());
+        this.loaded = counter(meterRegistry, name, "loaded");
+        this.shared = counter(meterRegistry, name, "shared");
+        this.stale = counter(meterRegistry, name, "stale");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String name, String result) {
+        return Counter.builder(METRICS_NAME)
+                .description("Reads served by a shared upstream call or a stale result")
+                .tag("name", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    public void shutdown() {
+        revalidator.shutdownNow();
+    }
+
+    public T get() {
+        long currentVersion = version.getAsLong();
+        Result<T> result = last;
+        if (result != null && result.version() == currentVersion
+                && System.currentTimeMillis() - result.loadedAt() <= staleWhileRevalidate) {
+            stale.increment();
+            revalidate(currentVersion);
+            return result.value();
+        }
+
+        Flight<T> current;
+        boolean owner = false;
+        synchronized (this) {
+            current = flight;
+            if (current == null || current.version() != currentVersion) {
+                current = new Flight<>(new CompletableFuture<>(), currentVersion);
+                flight = current;
+                owner = true;
+            }
+        }
+        if (owner) {
+            // Caller runs the call itself, so it keeps the request context
+            loaded.increment();
+            load(current);
+        } else {
+            shared.increment();
+        }
+
+        try {
+            return current.future().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void revalidate(long currentVersion) {
+        Flight<T> current;
+        synchronized (this) {
+            if (flight != null) {
+                return;
+            }
+            current = new Flight<>(new CompletableFuture<>(), currentVersion);
+            flight = current;
+        }
+        try {
+            revalidator.execute(() -> load(current));
+        } catch (RejectedExecutionException e) {
+            load(current);
+        }
+    }
+
+    private void load(Flight<T> current) {
+        try {
+            T value = loader.get();
+            // Result of a call started before a local write must not be served after it
+            if (current.version() == version.getAsLong()) {
+                last = new Result<>(value, current.version(), System.currentTimeMillis());
+            }
+            current.future().complete(value);
+        } catch (Throwable e) {
+            log.debug("Shared read failed: {}", e.getMessage());
+            current.future().completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                if (flight == current) {
+                    flight = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.qubership.integration.platform.variables.management.model.consul.txn.KeyResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Allocation and latency comparison of recursive KV response decoding:
+ * databind to {@code List<KeyResponse>} + split-based filtering (previous implementation)
+ * vs streaming {@link CommonVariablesReader}.
+ * <p>
+ * Run {@link #main(String[])} after {@code mvn test-compile}, optional arguments: variables count, value length.
+ */
+public class CommonVariablesReaderBenchmark {
+    private static final String PREFIX = "/config/benchmark/qip-engine-configurations/variables/common";
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 50;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    public static void main(String[] args) throws IOException {
+        int variablesCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int valueLength = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        byte[] body = buildResponse(variablesCount, valueLength);
+
+        System.out.printf("Response: %d variables, %d bytes%n", variablesCount, body.length);
+        measure("databind + split", () -> readWithDatabind(body));
+        measure("streaming reader", () -> readWithStreaming(body));
+    }
+
+    private static void measure(String name, IOSupplier<Map<String, String>> decoder) throws IOException {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int size = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            size += decoder.get().size();
+        }
+
+        long allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            size += decoder.get().size();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        System.out.printf("%-18s %10.2f ms/op %12d bytes allocated/op (checksum %d)%n",
+                name, elapsed / 1e6 / ITERATIONS, allocated / ITERATIONS, size);
+    }
+
+    private static Map<String, String> readWithDatabind(byte[] body) throws IOException {
+        List<KeyResponse> responses = OBJECT_MAPPER.readValue(body, new TypeReference<>() {
+        });
+        return responses.stream()
+                .filter(keyResponse -> {
+                    String[] split = keyResponse.getKey().substring(PREFIX.length()).split("/");
+                    return split.length == 1 && StringUtils.isNotEmpty(split[0]);
+                })
+                .map(keyResponse -> {
+                    String[] split = keyResponse.getKey().split("/");
+                    return Pair.of(split[split.length - 1], keyResponse.getDecodedValue());
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(Pair::getKey, pair -> pair.getValue() == null ? "" : pair.getValue()));
+    }
+
+    private static Map<String, String> readWithStreaming(byte[] body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(new ByteArrayInputStream(body))) {
+            return new CommonVariablesReader(PREFIX).read(parser);
+        }
+    }
+
+    private static byte[] buildResponse(int variablesCount, int valueLength) {
+        String key = PREFIX.substring(1) + "/";
+        String value = Base64.getEncoder().encodeToString(StringUtils.repeat('v', valueLength).getBytes(StandardCharsets.UTF_8));
+        StringBuilder json = new StringBuilder("[");
+        json.append("{\"LockIndex\":0,\"Key\":\"").append(key).append("\",\"Flags\":0,\"Value\":null,")
+                .append("\"CreateIndex\":1,\"ModifyIndex\":1}");
+        for (int i = 0; i < variablesCount; i++) {
+            json.append(",{\"LockIndex\":0,\"Key\":\"").append(key).append("variable-").append(i)
+                    .append("\",\"Flags\":0,\"Value\":\"").append(value)
+                    .append("\",\"CreateIndex\":").append(i + 2).append(",\"ModifyIndex\":").append(i + 2).append('}');
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface IOSupplier<T> {
+        T get() throws IOException;
+    }
+}
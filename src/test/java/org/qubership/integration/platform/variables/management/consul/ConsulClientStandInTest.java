@@ -0,0 +1,146 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.qubership.integration.platform.variables.management.model.consul.txn.KeyResponse;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link ConsulClient} against {@link ConsulStandInServer}
+ */
+class ConsulClientStandInTest {
+    private static final String PREFIX = "config/test/vars/";
+
+    private ConsulStandInServer server;
+    private ConsulClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = ConsulStandInServer.start();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ConsulResilience resilience = new ConsulResilience(Duration.ofSeconds(5), Duration.ofSeconds(5),
+                Duration.ofSeconds(5), Duration.ofSeconds(5), 3, 10, 50, 20, 50, Duration.ofSeconds(30), 3,
+                "", 0.95, Duration.ofMillis(50), meterRegistry);
+        client = new ConsulClient(new RestTemplate(), server.getUrl(), 4, ConsulStandInServer.MAX_TXN_BYTES,
+                ConsulReadMode.DEFAULT, Duration.ofSeconds(5), resilience, meterRegistry);
+        ReflectionTestUtils.setField(client, "consulToken", "token");
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+        server.close();
+    }
+
+    @Test
+    void blockingReadReturnsOnWriteWithNewIndex() throws Exception {
+        client.createOrUpdateKVsInTransaction(Map.of(PREFIX + "a", bytes("1")));
+        long index = client.waitForKVChanges("/" + PREFIX, true, 0, "0").getLeft();
+
+        CompletableFuture<Pair<Long, List<KeyResponse>>> watch = CompletableFuture.supplyAsync(() ->
+                client.waitForKVChanges("/" + PREFIX, true, index, "10s"));
+        Thread.sleep(200);
+        assertFalse(watch.isDone(), "blocking query must wait for a change after the index");
+
+        Map<String, Long> written = client.createOrUpdateKVsInTransaction(Map.of(PREFIX + "b", bytes("2")));
+        Pair<Long, List<KeyResponse>> changed = watch.get(5, TimeUnit.SECONDS);
+
+        assertTrue(changed.getLeft() > index);
+        assertEquals(written.get(PREFIX + "b"), changed.getLeft());
+        assertEquals(Set.of(PREFIX + "a", PREFIX + "b"),
+                changed.getRight().stream().map(KeyResponse::getKey).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void blockingReadTimesOutWithSameIndex() {
+        client.createOrUpdateKVsInTransaction(Map.of(PREFIX + "a", bytes("1")));
+        long index = client.waitForKVChanges("/" + PREFIX, true, 0, "0").getLeft();
+
+        long start = System.nanoTime();
+        Pair<Long, List<KeyResponse>> unchanged = client.waitForKVChanges("/" + PREFIX, true, index, "300ms");
+
+        assertEquals(index, unchanged.getLeft());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250);
+    }
+
+    @Test
+    void txnOverOperationsLimitIsRejected() {
+        List<Map<String, Map<String, String>>> operations = new ArrayList<>();
+        for (int i = 0; i <= ConsulStandInServer.MAX_TXN_OPERATIONS; i++) {
+            operations.add(Map.of("KV", Map.of("Verb", "set", "Key", PREFIX + i, "Value", "")));
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        HttpClientErrorException e = assertThrows(HttpClientErrorException.class, () -> new RestTemplate().exchange(
+                server.getUrl() + "/v1/txn", HttpMethod.PUT, new HttpEntity<>(operations, headers), String.class));
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, e.getStatusCode());
+        assertEquals(0, server.size());
+    }
+
+    @Test
+    void bulkWriteOverOperationsLimitIsSplitIntoTxns() {
+        Map<String, byte[]> values = new HashMap<>();
+        for (int i = 0; i < 3 * ConsulStandInServer.MAX_TXN_OPERATIONS + 5; i++) {
+            values.put(PREFIX + i, bytes("value " + i));
+        }
+
+        Map<String, Long> written = client.createOrUpdateKVsInTransaction(values);
+
+        assertEquals(values.keySet(), written.keySet());
+        assertEquals(values.size(), server.size());
+        assertEquals("value 7", server.get(PREFIX + 7));
+    }
+
+    @Test
+    void casWithStaleIndexFailsWithConflict() {
+        long index = client.casKV(PREFIX + "a", bytes("1"), 0);
+        long newIndex = client.casKV(PREFIX + "a", bytes("2"), index);
+        assertTrue(newIndex > index);
+
+        assertThrows(TxnConflictException.class, () -> client.casKV(PREFIX + "a", bytes("3"), index));
+        assertThrows(TxnConflictException.class, () -> client.casKV(PREFIX + "a", bytes("3"), 0));
+        assertEquals("2", server.get(PREFIX + "a"));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
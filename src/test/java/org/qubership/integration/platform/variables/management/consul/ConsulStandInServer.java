@@ -0,0 +1,469 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process stand-in of the consul HTTP API subset used by {@link ConsulClient}, for integration and performance runs
+ * without a real consul:
+ * <ul>
+ *     <li>{@code /v1/kv} - GET with recurse, keys + separator, raw and blocking index/wait; PUT with cas; DELETE with recurse</li>
+ *     <li>{@code /v1/txn} - atomic operations, at most {@link #MAX_TXN_OPERATIONS} operations and {@link #MAX_TXN_BYTES},
+ *     409 with errors if any operation fails</li>
+ * </ul>
+ * Query parameters follow consul semantics, e.g. presence of {@code recurse} enables it regardless of the value.
+ * Every request may be delayed and failed with 500 to simulate a slow or flaky cluster.
+ * <p>
+ * Run {@link #main(String[])} after {@code mvn test-compile} to serve on a fixed port, optional arguments:
+ * port, min latency, max latency (e.g. '5ms'), failure rate (0..1).
+ */
+@Slf4j
+public class ConsulStandInServer implements AutoCloseable {
+    public static final int MAX_TXN_OPERATIONS = 64;
+    public static final int MAX_TXN_BYTES = 512 * 1024;
+    private static final Duration DEFAULT_WAIT = Duration.ofMinutes(5);
+    private static final Duration MAX_WAIT = Duration.ofMinutes(10);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // Guarded by this, writes increase the index and notify blocking queries
+    private final NavigableMap<String, Entry> store = new TreeMap<>();
+    private long index = 1;
+
+    private volatile long minLatencyNanos;
+    private volatile long maxLatencyNanos;
+    private volatile double failureRate;
+
+    private record Entry(byte[] value, long flags, long createIndex, long modifyIndex) {
+    }
+
+    private ConsulStandInServer(int port) throws IOException {
+        this.executor = Executors.newCachedThreadPool(new BasicThreadFactory.Builder()
+                .namingPattern("consul-stand-in-%d")
+                .daemon(true)
+                .build());
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/v1/kv/", exchange -> handle(exchange, this::handleKV));
+        this.server.createContext("/v1/txn", exchange -> handle(exchange, this::handleTxn));
+        this.server.start();
+    }
+
+    /**
+     * Starts on a random free port
+     */
+    public static ConsulStandInServer start() throws IOException {
+        return start(0);
+    }
+
+    public static ConsulStandInServer start(int port) throws IOException {
+        return new ConsulStandInServer(port);
+    }
+
+    public static void main(String[] args) throws IOException {
+        ConsulStandInServer server = start(args.length > 0 ? Integer.parseInt(args[0]) : 8500);
+        if (args.length > 2) {
+            server.withLatency(DurationStyle.detectAndParse(args[1]), DurationStyle.detectAndParse(args[2]));
+        }
+        if (args.length > 3) {
+            server.withFailureRate(Double.parseDouble(args[3]));
+        }
+        log.info("Consul stand-in is listening on {}", server.getUrl());
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Every request is delayed by a uniformly distributed random time
+     */
+    public ConsulStandInServer withLatency(Duration min, Duration max) {
+        this.minLatencyNanos = min.toNanos();
+        this.maxLatencyNanos = Math.max(min.toNanos(), max.toNanos());
+        return this;
+    }
+
+    /**
+     * @param failureRate share of requests answered with 500, 0..1
+     */
+    public ConsulStandInServer withFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+        return this;
+    }
+
+    /**
+     * @param key path without a leading slash
+     */
+    public synchronized void put(String key, String value) {
+        index++;
+        Entry previous = store.get(key);
+        store.put(key, new Entry(value.getBytes(StandardCharsets.UTF_8), 0,
+                previous == null ? index : previous.createIndex(), index));
+        notifyAll();
+    }
+
+    public synchronized @Nullable String get(String key) {
+        Entry entry = store.get(key);
+        return entry == null ? null : new String(entry.value(), StandardCharsets.UTF_8);
+    }
+
+    public synchronized long getIndex() {
+        return index;
+    }
+
+    public synchronized int size() {
+        return store.size();
+    }
+
+    public synchronized void clear() {
+        index++;
+        store.clear();
+        notifyAll();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpExchange exchange, Map<String, String> params) throws IOException, InterruptedException;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try (exchange) {
+            long latency = minLatencyNanos == maxLatencyNanos
+                    ? minLatencyNanos
+                    : ThreadLocalRandom.current().nextLong(minLatencyNanos, maxLatencyNanos + 1);
+            if (latency > 0) {
+                TimeUnit.NANOSECONDS.sleep(latency);
+            }
+            if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                respond(exchange, 500, "text/plain", "Injected failure".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            handler.handle(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            respond(exchange, 500, "text/plain", String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void handleKV(HttpExchange exchange, Map<String, String> params) throws IOException, InterruptedException {
+        String key = URLDecoder.decode(
+                StringUtils.removeStart(exchange.getRequestURI().getRawPath(), "/v1/kv/"), StandardCharsets.UTF_8);
+        switch (exchange.getRequestMethod()) {
+            case "GET" -> getKV(exchange, key, params);
+            case "PUT" -> {
+                byte[] value = readBody(exchange);
+                boolean result = putKV(key, value, params);
+                respond(exchange, 200, "application/json", Boolean.toString(result).getBytes(StandardCharsets.UTF_8));
+            }
+            case "DELETE" -> {
+                boolean result = deleteKV(key, params);
+                respond(exchange, 200, "application/json", Boolean.toString(result).getBytes(StandardCharsets.UTF_8));
+            }
+            default -> respond(exchange, 405, "text/plain", new byte[0]);
+        }
+    }
+
+    private void getKV(HttpExchange exchange, String key, Map<String, String> params) throws IOException, InterruptedException {
+        long minIndex = Long.parseLong(params.getOrDefault("index", "0"));
+        if (minIndex > 0) {
+            awaitIndex(minIndex, params.containsKey("wait")
+                    ? DurationStyle.detectAndParse(params.get("wait"))
+                    : DEFAULT_WAIT);
+        }
+
+        long currentIndex;
+        byte[] body;
+        String contentType = "application/json";
+        synchronized (this) {
+            currentIndex = index;
+            if (params.containsKey("keys")) {
+                List<String> keys = listKeys(key, params.get("separator"));
+                body = keys.isEmpty() ? null : OBJECT_MAPPER.writeValueAsBytes(keys);
+            } else if (params.containsKey("recurse")) {
+                List<Map<String, Object>> entries = new ArrayList<>();
+                tailWithPrefix(key).forEach((entryKey, entry) -> entries.add(toJson(entryKey, entry, true)));
+                body = entries.isEmpty() ? null : OBJECT_MAPPER.writeValueAsBytes(entries);
+            } else {
+                Entry entry = store.get(key);
+                if (entry == null) {
+                    body = null;
+                } else if (params.containsKey("raw")) {
+                    body = entry.value();
+                    contentType = "application/octet-stream";
+                } else {
+                    body = OBJECT_MAPPER.writeValueAsBytes(List.of(toJson(key, entry, true)));
+                }
+            }
+        }
+
+        exchange.getResponseHeaders().set(ConsulClient.CONSUL_INDEX_HEADER, Long.toString(currentIndex));
+        exchange.getResponseHeaders().set(ConsulClient.CONSUL_KNOWN_LEADER_HEADER, "true");
+        exchange.getResponseHeaders().set(ConsulClient.CONSUL_LAST_CONTACT_HEADER, "0");
+        if (body == null) {
+            respond(exchange, 404, "text/plain", new byte[0]);
+        } else {
+            respond(exchange, 200, contentType, body);
+        }
+    }
+
+    /**
+     * Blocks until the store index exceeds the given one or the wait time passes
+     */
+    private synchronized void awaitIndex(long minIndex, Duration wait) throws InterruptedException {
+        Duration boundedWait = wait.compareTo(MAX_WAIT) > 0 ? MAX_WAIT : wait;
+        long deadline = System.nanoTime() + boundedWait.toNanos();
+        long remaining = boundedWait.toNanos();
+        while (index <= minIndex && remaining > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    private List<String> listKeys(String prefix, @Nullable String separator) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String key : tailWithPrefix(prefix).keySet()) {
+            int separatorIndex = StringUtils.isEmpty(separator) ? -1 : key.indexOf(separator, prefix.length());
+            keys.add(separatorIndex < 0 ? key : key.substring(0, separatorIndex + separator.length()));
+        }
+        return new ArrayList<>(keys);
+    }
+
+    private SortedMap<String, Entry> tailWithPrefix(String prefix) {
+        return prefix.isEmpty() ? store : store.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    private synchronized boolean putKV(String key, byte[] value, Map<String, String> params) {
+        Entry previous = store.get(key);
+        if (params.containsKey("cas") && !indexMatches(previous, Long.parseLong(params.get("cas")))) {
+            return false;
+        }
+        index++;
+        long flags = Long.parseLong(params.getOrDefault("flags", "0"));
+        store.put(key, new Entry(value, flags, previous == null ? index : previous.createIndex(), index));
+        notifyAll();
+        return true;
+    }
+
+    private synchronized boolean deleteKV(String key, Map<String, String> params) {
+        if (params.containsKey("cas") && !indexMatches(store.get(key), Long.parseLong(params.get("cas")))) {
+            return false;
+        }
+        index++;
+        if (params.containsKey("recurse")) {
+            tailWithPrefix(key).clear();
+        } else {
+            store.remove(key);
+        }
+        notifyAll();
+        return true;
+    }
+
+    private static boolean indexMatches(@Nullable Entry entry, long expectedIndex) {
+        return expectedIndex == 0 ? entry == null : entry != null && entry.modifyIndex() == expectedIndex;
+    }
+
+    private void handleTxn(HttpExchange exchange, Map<String, String> params) throws IOException {
+        if (!"PUT".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "text/plain", new byte[0]);
+            return;
+        }
+        byte[] body = readBody(exchange);
+        if (body.length > MAX_TXN_BYTES) {
+            respond(exchange, 413, "text/plain", String.format(
+                    "Request body too large, max size: %d bytes", MAX_TXN_BYTES).getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        List<Map<String, Map<String, Object>>> operations = OBJECT_MAPPER.readValue(body, new TypeReference<>() {
+        });
+        if (operations.size() > MAX_TXN_OPERATIONS) {
+            respond(exchange, 413, "text/plain", String.format(
+                    "Transaction contains too many operations (%d > %d)", operations.size(), MAX_TXN_OPERATIONS)
+                    .getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        int status = applyTxn(operations, response);
+        respond(exchange, status, "application/json", OBJECT_MAPPER.writeValueAsBytes(response));
+    }
+
+    /**
+     * All operations are applied or none, writes of a txn share the same new index
+     * @return http status
+     */
+    private synchronized int applyTxn(List<Map<String, Map<String, Object>>> operations, Map<String, Object> response) {
+        long txnIndex = index + 1;
+        boolean written = false;
+        // Previous entries of modified keys to roll back to, null - the key did not exist
+        Map<String, Entry> undo = new HashMap<>();
+        List<Map<String, Object>> results = new ArrayList<>();
+
+        for (int i = 0; i < operations.size(); i++) {
+            Map<String, Object> kv = operations.get(i).get("KV");
+            String error = kv == null ? "only KV operations are supported" : null;
+            if (error == null) {
+                String verb = String.valueOf(kv.get("Verb"));
+                String key = String.valueOf(kv.get("Key"));
+                Entry entry = store.get(key);
+                long expectedIndex = kv.get("Index") == null ? 0 : ((Number) kv.get("Index")).longValue();
+                switch (verb) {
+                    case "get", "check-index", "check-not-exists" -> {
+                        if ("check-not-exists".equals(verb)) {
+                            error = entry == null ? null : String.format("key %s exists", key);
+                        } else if (entry == null) {
+                            error = String.format("key %s doesn't exist", key);
+                        } else if ("check-index".equals(verb) && entry.modifyIndex() != expectedIndex) {
+                            error = String.format("current modify index %d != %d", entry.modifyIndex(), expectedIndex);
+                        } else {
+                            results.add(Map.of("KV", toJson(key, entry, "get".equals(verb))));
+                        }
+                    }
+                    case "get-tree" -> tailWithPrefix(key).forEach(
+                            (entryKey, treeEntry) -> results.add(Map.of("KV", toJson(entryKey, treeEntry, true))));
+                    case "set", "cas" -> {
+                        if ("cas".equals(verb) && !indexMatches(entry, expectedIndex)) {
+                            error = String.format("failed to set key %s, index is stale", key);
+                        } else {
+                            undo.putIfAbsent(key, entry);
+                            Object value = kv.get("Value");
+                            long flags = kv.get("Flags") == null ? 0 : ((Number) kv.get("Flags")).longValue();
+                            Entry newEntry = new Entry(value == null ? new byte[0] : Base64.getDecoder().decode((String) value),
+                                    flags, entry == null ? txnIndex : entry.createIndex(), txnIndex);
+                            store.put(key, newEntry);
+                            results.add(Map.of("KV", toJson(key, newEntry, false)));
+                            written = true;
+                        }
+                    }
+                    case "delete", "delete-cas" -> {
+                        if ("delete-cas".equals(verb) && !indexMatches(entry, expectedIndex)) {
+                            error = String.format("failed to delete key %s, index is stale", key);
+                        } else {
+                            undo.putIfAbsent(key, entry);
+                            store.remove(key);
+                            written = true;
+                        }
+                    }
+                    case "delete-tree" -> {
+                        SortedMap<String, Entry> tree = tailWithPrefix(key);
+                        tree.forEach(undo::putIfAbsent);
+                        tree.clear();
+                        written = true;
+                    }
+                    default -> error = String.format("unknown KV verb %s", verb);
+                }
+            }
+
+            if (error != null) {
+                undo.forEach((key, entry) -> {
+                    if (entry == null) {
+                        store.remove(key);
+                    } else {
+                        store.put(key, entry);
+                    }
+                });
+                Map<String, Object> txnError = new LinkedHashMap<>();
+                txnError.put("OpIndex", i);
+                txnError.put("What", error);
+                response.put("Results", null);
+                response.put("Errors", List.of(txnError));
+                return 409;
+            }
+        }
+
+        if (written) {
+            index = txnIndex;
+            notifyAll();
+        }
+        response.put("Results", results);
+        response.put("Errors", null);
+        return 200;
+    }
+
+    private static Map<String, Object> toJson(String key, Entry entry, boolean withValue) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("LockIndex", 0);
+        json.put("Key", key);
+        json.put("Flags", entry.flags());
+        json.put("Value", withValue && entry.value().length > 0 ? Base64.getEncoder().encodeToString(entry.value()) : null);
+        json.put("CreateIndex", entry.createIndex());
+        json.put("ModifyIndex", entry.modifyIndex());
+        return json;
+    }
+
+    private static Map<String, String> parseQuery(@Nullable String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (StringUtils.isEmpty(rawQuery)) {
+            return params;
+        }
+        for (String param : rawQuery.split("&")) {
+            int separator = param.indexOf('=');
+            String name = separator < 0 ? param : param.substring(0, separator);
+            String value = separator < 0 ? "" : param.substring(separator + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            return body.readAllBytes();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.consul;
+
+import org.junit.jupiter.api.Test;
+import org.qubership.integration.platform.variables.management.model.consul.txn.request.TxnKVRequest;
+import org.qubership.integration.platform.variables.management.model.consul.txn.request.TxnRequest;
+import org.qubership.integration.platform.variables.management.model.consul.txn.request.TxnVerb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TxnBatchPlannerTest {
+
+    @Test
+    void emptyOperationsMakeNoBatches() {
+        assertTrue(new TxnBatchPlanner(64, 1024).plan(List.of()).isEmpty());
+    }
+
+    @Test
+    void splitsByOperationsCount() {
+        List<TxnRequest> operations = operations(130, 10);
+
+        List<TxnBatchPlanner.Batch> batches = new TxnBatchPlanner(64, Long.MAX_VALUE).plan(operations);
+
+        assertEquals(List.of(64, 64, 2), batches.stream().map(batch -> batch.operations().size()).toList());
+        assertEquals(List.of(0, 64, 128), batches.stream().map(TxnBatchPlanner.Batch::offset).toList());
+        assertEquals(operations, flatten(batches));
+    }
+
+    @Test
+    void splitsBySize() {
+        List<TxnRequest> operations = operations(7, 100);
+        long operationSize = TxnBatchPlanner.estimateSize(operations.get(0));
+        long maxBytes = TxnBatchPlanner.REQUEST_OVERHEAD_BYTES + 3 * operationSize + operationSize / 2;
+
+        List<TxnBatchPlanner.Batch> batches = new TxnBatchPlanner(64, maxBytes).plan(operations);
+
+        assertEquals(List.of(3, 3, 1), batches.stream().map(batch -> batch.operations().size()).toList());
+        for (TxnBatchPlanner.Batch batch : batches) {
+            assertEquals(TxnBatchPlanner.REQUEST_OVERHEAD_BYTES + batch.operations().size() * operationSize, batch.bytes());
+            assertTrue(batch.bytes() <= maxBytes);
+        }
+        assertEquals(operations, flatten(batches));
+    }
+
+    @Test
+    void operationsExactlyFillingTheLimitShareBatch() {
+        List<TxnRequest> operations = operations(4, 100);
+        long operationSize = TxnBatchPlanner.estimateSize(operations.get(0));
+        long maxBytes = TxnBatchPlanner.REQUEST_OVERHEAD_BYTES + 2 * operationSize;
+
+        List<TxnBatchPlanner.Batch> batches = new TxnBatchPlanner(64, maxBytes).plan(operations);
+
+        assertEquals(List.of(2, 2), batches.stream().map(batch -> batch.operations().size()).toList());
+        assertEquals(maxBytes, batches.get(0).bytes());
+    }
+
+    @Test
+    void mixedSizesArePackedGreedilyInOrder() {
+        List<TxnRequest> operations = List.of(operation("a", 300), operation("b", 10), operation("c", 10),
+                operation("d", 300), operation("e", 10));
+        long maxBytes = TxnBatchPlanner.REQUEST_OVERHEAD_BYTES
+                + TxnBatchPlanner.estimateSize(operations.get(0))
+                + TxnBatchPlanner.estimateSize(operations.get(1))
+                + TxnBatchPlanner.estimateSize(operations.get(2));
+
+        List<TxnBatchPlanner.Batch> batches = new TxnBatchPlanner(64, maxBytes).plan(operations);
+
+        assertEquals(List.of(3, 2), batches.stream().map(batch -> batch.operations().size()).toList());
+        assertEquals(List.of(0, 3), batches.stream().map(TxnBatchPlanner.Batch::offset).toList());
+        assertEquals(operations, flatten(batches));
+    }
+
+    @Test
+    void oversizedOperationsAreRejectedBeforePlanning() {
+        List<TxnRequest> operations = List.of(operation("small", 10), operation("large-1", 2000),
+                operation("small-2", 10), operation("large-2", 5000));
+
+        TxnPayloadTooLargeException exception = assertThrows(TxnPayloadTooLargeException.class,
+                () -> new TxnBatchPlanner(64, 1024).plan(operations));
+
+        assertEquals(List.of("large-1", "large-2"), exception.getKeys());
+    }
+
+    @Test
+    void groupsAreNotSplitBetweenBatches() {
+        List<List<TxnRequest>> groups = List.of(
+                List.of(operation("a", 10), deleteTree("a/1/")),
+                List.of(operation("b", 10), deleteTree("b/1/")),
+                List.of(operation("c", 10)));
+
+        List<TxnBatchPlanner.Batch> batches = new TxnBatchPlanner(3, Long.MAX_VALUE).planGroups(groups);
+
+        assertEquals(List.of(2, 3), batches.stream().map(batch -> batch.operations().size()).toList());
+        assertEquals(List.of(0, 2), batches.stream().map(TxnBatchPlanner.Batch::offset).toList());
+        assertEquals("b", batches.get(1).operations().get(0).getKv().getKey());
+    }
+
+    @Test
+    void groupExceedingOperationsLimitIsRejected() {
+        List<List<TxnRequest>> groups = List.of(List.of(operation("a", 10), deleteTree("a/1/"), deleteTree("a/2/")));
+
+        TxnPayloadTooLargeException exception = assertThrows(TxnPayloadTooLargeException.class,
+                () -> new TxnBatchPlanner(2, Long.MAX_VALUE).planGroups(groups));
+
+        assertEquals(List.of("a"), exception.getKeys());
+    }
+
+    @Test
+    void sizeIncludesKeyAndEncodedValue() {
+        TxnRequest withValue = operation("key", 3);
+        TxnRequest withoutValue = new TxnRequest(new TxnKVRequest(TxnVerb.DELETE, "key", null));
+
+        // 3 bytes are 4 base64 characters
+        assertEquals(TxnBatchPlanner.OPERATION_OVERHEAD_BYTES + 3 + 4, TxnBatchPlanner.estimateSize(withValue));
+        assertEquals(TxnBatchPlanner.OPERATION_OVERHEAD_BYTES + 3, TxnBatchPlanner.estimateSize(withoutValue));
+    }
+
+    private static List<TxnRequest> operations(int count, int valueLength) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> operation(String.format("key-%04d", i), valueLength))
+                .toList();
+    }
+
+    private static TxnRequest operation(String key, int valueLength) {
+        return new TxnRequest(new TxnKVRequest(TxnVerb.SET, key, "v".repeat(valueLength)));
+    }
+
+    private static TxnRequest deleteTree(String prefix) {
+        return new TxnRequest(new TxnKVRequest(TxnVerb.DELETE_TREE, prefix, null));
+    }
+
+    private static List<TxnRequest> flatten(List<TxnBatchPlanner.Batch> batches) {
+        List<TxnRequest> operations = new ArrayList<>();
+        batches.forEach(batch -> operations.addAll(batch.operations()));
+        return operations;
+    }
+}
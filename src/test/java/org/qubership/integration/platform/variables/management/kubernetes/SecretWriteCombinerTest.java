@@ -0,0 +1,225 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.qubership.integration.platform.variables.management.kubernetes;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.qubership.integration.platform.variables.management.kubernetes.SecretWriteCombiner.SecretMutation;
+import org.qubership.integration.platform.variables.management.kubernetes.SecretWriteCombiner.SecretPatch;
+import org.qubership.integration.platform.variables.management.model.json.JsonPatch;
+import org.qubership.integration.platform.variables.management.model.json.PatchOperation;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SecretWriteCombinerTest {
+    private static final String SECRET = "secret";
+    private static final long TIMEOUT_SECONDS = 10;
+
+    // State of the secret in the stub api server
+    private final Map<String, String> stored = new ConcurrentHashMap<>();
+    private final List<List<JsonPatch>> sentPatches = new CopyOnWriteArrayList<>();
+    private final CountDownLatch firstPatchStarted = new CountDownLatch(1);
+    private final CountDownLatch firstPatchReleased = new CountDownLatch(1);
+    private volatile Predicate<List<JsonPatch>> rejectedPatches = patches -> false;
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private final ReentrantLock secretLock = new ReentrantLock();
+    private final SecretWriteCombiner combiner = new SecretWriteCombiner(stubOperator(), name -> new HashMap<>(stored),
+            (name, data) -> { }, name -> secretLock, true, 100, 2, new SimpleMeterRegistry());
+
+    @AfterEach
+    void tearDown() {
+        combiner.shutdown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void writeToIdleSecretIsPatchedAloneInCallerThread() {
+        firstPatchReleased.countDown();
+
+        String thread = combiner.write(SECRET, data -> {
+            data.put("a", "1");
+            return new SecretPatch<>(KubeOperator.getAddDataPatches(Map.of("a", "1"), false), Thread.currentThread().getName());
+        });
+
+        assertEquals(Thread.currentThread().getName(), thread);
+        assertEquals(1, sentPatches.size());
+        assertEquals(Map.of("a", "1"), stored);
+    }
+
+    @Test
+    void writesQueuedBehindInFlightPatchAreSentAsOnePatch() throws Exception {
+        Future<String> first = callers.submit(() -> combiner.write(SECRET, put("first")));
+        assertTrue(firstPatchStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        List<Future<String>> queued = writeConcurrently(List.of(put("b"), put("c"), put("d")));
+        firstPatchReleased.countDown();
+
+        assertEquals("first", first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(List.of("b", "c", "d"), results(queued));
+        assertEquals(2, sentPatches.size());
+        assertEquals(3, sentPatches.get(1).size());
+        assertEquals(Set.of("first", "b", "c", "d"), stored.keySet());
+    }
+
+    @Test
+    void failedMutationFailsOnlyItsCaller() throws Exception {
+        Future<String> first = callers.submit(() -> combiner.write(SECRET, put("first")));
+        assertTrue(firstPatchStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        SecretMutation<String> invalid = data -> {
+            data.put("partial", "x");
+            throw new IllegalArgumentException("invalid");
+        };
+        List<Future<String>> queued = writeConcurrently(List.of(put("b"), invalid, put("c")));
+        firstPatchReleased.countDown();
+        first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals("b", queued.get(0).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> queued.get(1).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+        assertEquals("c", queued.get(2).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        // Changes of the failed mutation are not sent with the others
+        assertEquals(2, sentPatches.size());
+        assertEquals(Set.of("first", "b", "c"), stored.keySet());
+    }
+
+    @Test
+    void rejectedCombinedPatchIsRepeatedOneByOne() throws Exception {
+        // The combined patch and the single patch of 'bad' are rejected
+        rejectedPatches = patches -> patches.size() > 1 || patches.get(0).getPath().endsWith("/bad");
+        Future<String> first = callers.submit(() -> combiner.write(SECRET, put("first")));
+        assertTrue(firstPatchStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        List<Future<String>> queued = writeConcurrently(List.of(put("b"), put("bad"), put("c")));
+        firstPatchReleased.countDown();
+        first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals("b", queued.get(0).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> queued.get(1).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals("rejected 1", e.getCause().getMessage());
+        // Error of the combined patch is kept for diagnostics
+        assertEquals(1, e.getCause().getSuppressed().length);
+        assertEquals("rejected 3", e.getCause().getSuppressed()[0].getMessage());
+        assertEquals("c", queued.get(2).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        // first, the combined one, then one per write
+        assertEquals(5, sentPatches.size());
+        assertEquals(Set.of("first", "b", "c"), stored.keySet());
+    }
+
+    @Test
+    void queuedWritesFailOnShutdown() throws Exception {
+        Future<String> first = callers.submit(() -> combiner.write(SECRET, put("first")));
+        assertTrue(firstPatchStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        List<Future<String>> queued = writeConcurrently(List.of(put("b")));
+
+        combiner.shutdown();
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> queued.get(0).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertThrows(IllegalStateException.class, () -> combiner.write(SECRET, put("late")));
+        firstPatchReleased.countDown();
+        assertEquals("first", first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private KubeOperator stubOperator() {
+        KubeOperator operator = mock(KubeOperator.class);
+        when(operator.updateSecretData(eq(SECRET), anyList())).thenAnswer(invocation -> {
+            List<JsonPatch> patches = invocation.getArgument(1);
+            sentPatches.add(patches);
+            if (sentPatches.size() == 1) {
+                firstPatchStarted.countDown();
+                assertTrue(firstPatchReleased.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            }
+            if (rejectedPatches.test(patches)) {
+                throw new IllegalStateException("rejected " + patches.size());
+            }
+            for (JsonPatch patch : patches) {
+                String key = patch.getPath().substring(patch.getPath().lastIndexOf('/') + 1);
+                if (patch.getOperation() == PatchOperation.REMOVE) {
+                    stored.remove(key);
+                } else {
+                    stored.put(key, new String((byte[]) patch.getValue()));
+                }
+            }
+            return new ConcurrentHashMap<>(stored);
+        });
+        return operator;
+    }
+
+    private static SecretMutation<String> put(String key) {
+        return data -> {
+            data.put(key, key);
+            return new SecretPatch<>(KubeOperator.getAddDataPatches(Map.of(key, key), false), key);
+        };
+    }
+
+    /**
+     * Starts the writes one by one, each is queued before the next one starts, so their order is kept
+     */
+    private List<Future<String>> writeConcurrently(List<SecretMutation<String>> mutations) throws InterruptedException {
+        List<Future<String>> futures = new ArrayList<>();
+        for (SecretMutation<String> mutation : mutations) {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            Thread caller = new Thread(() -> {
+                try {
+                    future.complete(combiner.write(SECRET, mutation));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+            caller.setDaemon(true);
+            caller.start();
+            awaitWaiting(caller);
+            futures.add(future);
+        }
+        return futures;
+    }
+
+    /**
+     * Caller parks in write() only after its mutation is queued
+     */
+    private static void awaitWaiting(Thread caller) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (caller.getState() != Thread.State.WAITING) {
+            assertTrue(System.nanoTime() < deadline, "write was not queued");
+            Thread.sleep(5);
+        }
+    }
+
+    private static List<String> results(List<Future<String>> futures) throws Exception {
+        List<String> results = new ArrayList<>();
+        for (Future<String> future : futures) {
+            results.add(future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+}
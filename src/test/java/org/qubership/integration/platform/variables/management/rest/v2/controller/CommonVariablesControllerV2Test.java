@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.qubership.integration.platform.variables.management.rest.v2.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.qubership.integration.platform.variables.management.service.CommonVariablesMigrationService;
+import org.qubership.integration.platform.variables.management.service.CommonVariablesQueryService;
+import org.qubership.integration.platform.variables.management.service.CommonVariablesService;
+import org.qubership.integration.platform.variables.management.service.CommonVariablesWatchService;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+class CommonVariablesControllerV2Test {
+    private final CommonVariablesWatchService watchService = mock(CommonVariablesWatchService.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        when(watchService.subscribe(any())).thenReturn(new SseEmitter());
+        mockMvc = MockMvcBuilders.standaloneSetup(new CommonVariablesControllerV2(
+                mock(CommonVariablesService.class),
+                mock(CommonVariablesQueryService.class),
+                mock(CommonVariablesMigrationService.class),
+                watchService)).build();
+    }
+
+    @Test
+    void subscribeStartsFromIndexParameter() throws Exception {
+        mockMvc.perform(get("/v2/common-variables/watch")
+                .param("index", "10")
+                .accept(MediaType.TEXT_EVENT_STREAM));
+
+        verify(watchService).subscribe(10L);
+    }
+
+    @Test
+    void reconnectResumesFromLastEventIdNotFromOriginalIndex() throws Exception {
+        // EventSource repeats the original url on reconnect and adds the id of the last received event
+        mockMvc.perform(get("/v2/common-variables/watch")
+                .param("index", "10")
+                .header("Last-Event-ID", "25")
+                .accept(MediaType.TEXT_EVENT_STREAM));
+
+        verify(watchService).subscribe(25L);
+    }
+
+    @Test
+    void reconnectWithoutIndexParameterResumesFromLastEventId() throws Exception {
+        mockMvc.perform(get("/v2/common-variables/watch")
+                .header("Last-Event-ID", "25")
+                .accept(MediaType.TEXT_EVENT_STREAM));
+
+        verify(watchService).subscribe(25L);
+    }
+
+    @Test
+    void subscribeWithoutIndexStartsFromCurrentState() throws Exception {
+        mockMvc.perform(get("/v2/common-variables/watch")
+                .accept(MediaType.TEXT_EVENT_STREAM));
+
+        verify(watchService).subscribe(null);
+    }
+}
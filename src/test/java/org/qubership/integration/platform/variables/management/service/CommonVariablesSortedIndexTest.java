@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024-2025 NetCracker Technology Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.qubership.integration.platform.variables.management.service;
+
+import org.junit.jupiter.api.Test;
+import org.qubership.integration.platform.variables.management.rest.exception.MalformedCursorException;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommonVariablesSortedIndexTest {
+    private static final List<String> NAMES = List.of("alpha", "app.host", "app.port", "app.timeout", "Beta",
+            "beta", "db.url", "db.user", "gamma", "zeta");
+
+    private final CommonVariablesSortedIndex index = new CommonVariablesSortedIndex(42, variables(NAMES));
+
+    @Test
+    void ascendingPagesCoverAllNamesOnce() {
+        List<String> expected = new ArrayList<>(NAMES);
+        Collections.sort(expected);
+
+        assertEquals(expected, readAll(after -> index.page(3, after, true, null, null)));
+    }
+
+    @Test
+    void descendingPagesCoverAllNamesOnce() {
+        List<String> expected = new ArrayList<>(NAMES);
+        expected.sort(Comparator.reverseOrder());
+
+        assertEquals(expected, readAll(after -> index.page(4, after, false, null, null)));
+    }
+
+    @Test
+    void prefixLimitsRangeAndTotal() {
+        CommonVariablesSortedIndex.Page first = index.page(2, null, true, "app.", null);
+
+        assertEquals(List.of("app.host", "app.port"), first.names());
+        assertEquals(3, first.total());
+        assertTrue(first.hasMore());
+        assertEquals(List.of("app.timeout", "app.port", "app.host"),
+                readAll(after -> index.page(2, after, false, "app.", null)));
+        assertEquals(List.of(), index.page(2, null, true, "missing", null).names());
+        assertEquals(0, index.page(2, null, true, "missing", null).total());
+    }
+
+    @Test
+    void containsIsCaseInsensitiveWithoutTotal() {
+        CommonVariablesSortedIndex.Page page = index.page(10, null, true, null, "ETA");
+
+        assertEquals(List.of("Beta", "beta", "zeta"), page.names());
+        assertNull(page.total());
+        assertFalse(page.hasMore());
+    }
+
+    @Test
+    void cursorOfRemovedNameContinuesFromItsPosition() {
+        CommonVariablesSortedIndex changed = new CommonVariablesSortedIndex(43,
+                variables(List.of("alpha", "app.timeout", "beta", "db.url")));
+
+        assertEquals(List.of("app.timeout", "beta"), changed.page(2, "app.port", true, null, null).names());
+        assertEquals(List.of("alpha"), changed.page(2, "app.port", false, null, null).names());
+    }
+
+    @Test
+    void lastPageHasNoMore() {
+        CommonVariablesSortedIndex.Page page = index.page(NAMES.size(), null, true, null, null);
+
+        assertEquals(NAMES.size(), page.names().size());
+        assertFalse(page.hasMore());
+        assertEquals("zeta", page.lastName());
+        assertTrue(index.page(5, "zeta", true, null, null).names().isEmpty());
+    }
+
+    @Test
+    void cursorRoundTrip() {
+        for (String name : List.of("alpha", "app.host", "имя/с пробелом", "a+b=c?&", "")) {
+            String cursor = CommonVariablesQueryService.encodeCursor(name);
+            assertFalse(cursor.contains("=") || cursor.contains("+") || cursor.contains("/"), cursor);
+            if (!name.isEmpty()) {
+                assertEquals(name, CommonVariablesQueryService.decodeCursor(cursor));
+            }
+        }
+        assertNull(CommonVariablesQueryService.decodeCursor(null));
+        assertNull(CommonVariablesQueryService.decodeCursor(""));
+        assertThrows(MalformedCursorException.class, () -> CommonVariablesQueryService.decodeCursor("not a cursor!"));
+    }
+
+    private static List<String> readAll(Function<String, CommonVariablesSortedIndex.Page> pages) {
+        List<String> names = new ArrayList<>();
+        String after = null;
+        CommonVariablesSortedIndex.Page page;
+        do {
+            page = pages.apply(after);
+            names.addAll(page.names());
+            after = page.lastName();
+        } while (page.hasMore());
+        return names;
+    }
+
+    private static Map<String, String> variables(List<String> names) {
+        Map<String, String> variables = new HashMap<>();
+        names.forEach(name -> variables.put(name, "value of " + name));
+        return variables;
+    }
+}